@@ -0,0 +1,314 @@
+package com.cloudwebrtc.webrtc;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.video.CaptureFormatSelector;
+
+import org.webrtc.CapturerObserver;
+import org.webrtc.SurfaceTextureHelper;
+import org.webrtc.VideoCapturer;
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoSource;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One camera capturer shared by every local track on that camera, so that a
+ * second {@code getUserMedia} or a clone does not open the camera again.
+ *
+ * Every track has its own {@link VideoSource}, adapted to its own output
+ * format, and the capturer's frames are fanned out to all of them. The
+ * capturer runs at the largest capture format any of the tracks needs.
+ * Starting, changing and stopping the capturer happen on the serial
+ * capture lifecycle executor of {@link GetUserMediaImpl}.
+ */
+class CameraCaptureSource implements CapturerObserver {
+    private static final String TAG = FlutterWebRTCPlugin.TAG;
+
+    final VideoCapturer capturer;
+    final SurfaceTextureHelper surfaceTextureHelper;
+    /**
+     * The camera the capturer is on; changes with {@code switchCamera}.
+     */
+    volatile String cameraName;
+    /**
+     * The serial executor every capturer operation runs on.
+     */
+    private final ExecutorService lifecycleExecutor;
+
+    // Guarded by this.
+    private final Map<String, VideoSource> sources = new LinkedHashMap<>();
+    private final Map<String, CaptureFormatSelector.Selection> formats = new LinkedHashMap<>();
+    private boolean updatePending;
+
+    // Only used on the lifecycle executor.
+    private boolean started;
+    private int captureWidth;
+    private int captureHeight;
+    private int captureFps;
+
+    // Hot standby, guarded by this: the camera the next switchCamera goes
+    // to, and the capture format each track will use on it, chosen ahead of
+    // time.
+    private boolean hotStandby;
+    @Nullable
+    private String standbyCameraName;
+    private Map<String, CaptureFormatSelector.Selection> standbyFormats = Collections.emptyMap();
+
+    // Written on the capture thread, which must never wait for this.
+    private volatile boolean capturing;
+    private volatile CapturerObserver[] observers = new CapturerObserver[0];
+    private final AtomicReference<Runnable> nextFrameCallback = new AtomicReference<>();
+
+    CameraCaptureSource(String cameraName, VideoCapturer capturer,
+                        SurfaceTextureHelper surfaceTextureHelper, ExecutorService lifecycleExecutor) {
+        this.cameraName = cameraName;
+        this.capturer = capturer;
+        this.surfaceTextureHelper = surfaceTextureHelper;
+        this.lifecycleExecutor = lifecycleExecutor;
+    }
+
+    /**
+     * Feeds {@code source} from the capturer, and starts the capturer or
+     * raises its capture format if needed.
+     */
+    synchronized void addTrack(String trackId, VideoSource source, CaptureFormatSelector.Selection format) {
+        sources.put(trackId, source);
+        formats.put(trackId, format);
+        source.adaptOutputFormat(format.width, format.height, format.fps);
+        updateObservers();
+        if (capturing) {
+            // The capturer will not report starting again.
+            source.getCapturerObserver().onCapturerStarted(true);
+        }
+        scheduleUpdate();
+    }
+
+    /**
+     * Adapts the track's source to {@code format}, and raises or lowers the
+     * capture format if needed, without restarting the capturer.
+     *
+     * @return {@code false} if the track is not on this capturer.
+     */
+    synchronized boolean updateTrack(String trackId, CaptureFormatSelector.Selection format) {
+        VideoSource source = sources.get(trackId);
+        if (source == null) {
+            return false;
+        }
+        formats.put(trackId, format);
+        source.adaptOutputFormat(format.width, format.height, format.fps);
+        scheduleUpdate();
+        return true;
+    }
+
+    /**
+     * Stops feeding the track's source and lowers the capture format if
+     * possible.
+     *
+     * @return {@code true} if this was the last track, in which case the
+     * caller calls {@link #stop()}.
+     */
+    synchronized boolean removeTrack(String trackId) {
+        VideoSource source = sources.remove(trackId);
+        formats.remove(trackId);
+        if (source == null) {
+            return sources.isEmpty();
+        }
+        updateObservers();
+        if (sources.isEmpty()) {
+            return true;
+        }
+        scheduleUpdate();
+        return false;
+    }
+
+    synchronized int getTrackCount() {
+        return sources.size();
+    }
+
+    /**
+     * The format of each track, by track id.
+     */
+    synchronized Map<String, CaptureFormatSelector.Selection> getFormats() {
+        return new HashMap<>(formats);
+    }
+
+    synchronized void setHotStandby(boolean enabled) {
+        hotStandby = enabled;
+        if (!enabled) {
+            standbyCameraName = null;
+            standbyFormats = Collections.emptyMap();
+        }
+    }
+
+    synchronized boolean isHotStandby() {
+        return hotStandby;
+    }
+
+    /**
+     * Records the camera prepared for the next switch and the formats chosen
+     * for the tracks on it, if hot standby is still enabled.
+     */
+    synchronized void setStandbyCamera(@Nullable String cameraName,
+                                       Map<String, CaptureFormatSelector.Selection> formats) {
+        if (hotStandby) {
+            standbyCameraName = cameraName;
+            standbyFormats = formats;
+        }
+    }
+
+    @Nullable
+    synchronized String getStandbyCamera() {
+        return standbyCameraName;
+    }
+
+    /**
+     * Takes the formats prepared for {@code cameraName}, which can only be
+     * used once.
+     *
+     * @return the formats by track id, or {@code null} if that camera was
+     * not prepared.
+     */
+    @Nullable
+    synchronized Map<String, CaptureFormatSelector.Selection> takeStandbyFormats(String cameraName) {
+        if (!cameraName.equals(standbyCameraName)) {
+            return null;
+        }
+        Map<String, CaptureFormatSelector.Selection> prepared = standbyFormats;
+        standbyCameraName = null;
+        standbyFormats = Collections.emptyMap();
+        return prepared;
+    }
+
+    /**
+     * Runs {@code callback} on the capture thread after the next frame. A
+     * callback that has not run yet is run right away instead. Every
+     * callback runs exactly once.
+     */
+    void runOnNextFrame(Runnable callback) {
+        Runnable previous = nextFrameCallback.getAndSet(callback);
+        if (previous != null) {
+            previous.run();
+        }
+    }
+
+    /**
+     * Restarts the capturer at the current capture format, e.g. after the
+     * app was in the background.
+     */
+    void restart() {
+        lifecycleExecutor.execute(() -> {
+            if (started) {
+                capturer.startCapture(captureWidth, captureHeight, captureFps);
+            }
+        });
+    }
+
+    /**
+     * Stops and disposes of the capturer. Called on the lifecycle executor
+     * after the last track was removed, or on a capturer that was never
+     * started.
+     */
+    void stop() {
+        try {
+            if (started) {
+                capturer.stopCapture();
+            }
+        } catch (InterruptedException e) {
+            Log.e(TAG, "CameraCaptureSource: failed to stop capturer of camera " + cameraName);
+        } finally {
+            started = false;
+            Runnable callback = nextFrameCallback.getAndSet(null);
+            if (callback != null) {
+                callback.run();
+            }
+            capturer.dispose();
+            surfaceTextureHelper.stopListening();
+            surfaceTextureHelper.dispose();
+        }
+    }
+
+    private void updateObservers() {
+        CapturerObserver[] list = new CapturerObserver[sources.size()];
+        int i = 0;
+        for (VideoSource source : sources.values()) {
+            list[i++] = source.getCapturerObserver();
+        }
+        observers = list;
+    }
+
+    /**
+     * Format changes requested before the executor gets to the pending
+     * update are applied together.
+     */
+    private void scheduleUpdate() {
+        if (!updatePending) {
+            updatePending = true;
+            lifecycleExecutor.execute(this::updateCaptureFormat);
+        }
+    }
+
+    private void updateCaptureFormat() {
+        int width = 0;
+        int height = 0;
+        int fps = 0;
+        synchronized (this) {
+            updatePending = false;
+            for (CaptureFormatSelector.Selection format : formats.values()) {
+                if ((long) format.captureWidth * format.captureHeight > (long) width * height) {
+                    width = format.captureWidth;
+                    height = format.captureHeight;
+                }
+                fps = Math.max(fps, format.captureFps);
+            }
+        }
+        if (width == 0) {
+            // The last track is gone and stop() is queued.
+            return;
+        }
+        if (!started) {
+            started = true;
+            capturer.startCapture(width, height, fps);
+        } else if (width != captureWidth || height != captureHeight || fps != captureFps) {
+            Log.d(TAG, "CameraCaptureSource: changeCaptureFormat " + width + "x" + height + "@" + fps);
+            capturer.changeCaptureFormat(width, height, fps);
+        }
+        captureWidth = width;
+        captureHeight = height;
+        captureFps = fps;
+    }
+
+    @Override
+    public void onCapturerStarted(boolean success) {
+        capturing = success;
+        for (CapturerObserver observer : observers) {
+            observer.onCapturerStarted(success);
+        }
+    }
+
+    @Override
+    public void onCapturerStopped() {
+        capturing = false;
+        for (CapturerObserver observer : observers) {
+            observer.onCapturerStopped();
+        }
+    }
+
+    @Override
+    public void onFrameCaptured(VideoFrame frame) {
+        for (CapturerObserver observer : observers) {
+            observer.onFrameCaptured(frame);
+        }
+        Runnable callback = nextFrameCallback.getAndSet(null);
+        if (callback != null) {
+            callback.run();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.cloudwebrtc.webrtc;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+
+import org.webrtc.DataChannel;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+/**
+ * Streams files over a {@link DataChannel} without round-tripping every chunk
+ * through Dart.
+ *
+ * {@link Sender} maps the file in windows and hands {@code chunkSize} slices to
+ * the channel, waiting for the buffered amount to drain below
+ * {@code maxBufferedAmount} between chunks. {@link Receiver} writes incoming
+ * binary messages into a file on its own writer thread. Both report progress through the data
+ * channel's event channel at most every {@link #PROGRESS_INTERVAL_MS}.
+ */
+class DataChannelFileTransfer {
+    private static final String TAG = FlutterWebRTCPlugin.TAG;
+
+    static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+    static final long DEFAULT_MAX_BUFFERED_AMOUNT = 1024 * 1024;
+    static final long PROGRESS_INTERVAL_MS = 100;
+    /**
+     * Size of the file window mapped at a time, so large files do not need a
+     * single mapping of their whole length.
+     */
+    private static final long MAP_WINDOW_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Senders block while the channel drains, so each needs a thread; sends
+     * beyond this many wait for one to finish.
+     */
+    private static final int MAX_CONCURRENT_SENDS = 4;
+
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            MAX_CONCURRENT_SENDS, MAX_CONCURRENT_SENDS, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), runnable -> new Thread(runnable, "DataChannelFileSender"));
+
+    static {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    static class Sender implements Runnable {
+        private final DataChannelObserver observer;
+        private final File file;
+        private final int chunkSize;
+        private final long maxBufferedAmount;
+        private final Result result;
+        private volatile boolean cancelled = false;
+
+        Sender(DataChannelObserver observer, String path, int chunkSize, long maxBufferedAmount,
+               Result result) {
+            this.observer = observer;
+            this.file = new File(path);
+            this.chunkSize = chunkSize > 0 ? chunkSize : DEFAULT_CHUNK_SIZE;
+            this.maxBufferedAmount = Math.max(maxBufferedAmount > 0
+                    ? maxBufferedAmount : DEFAULT_MAX_BUFFERED_AMOUNT, this.chunkSize);
+            this.result = result;
+        }
+
+        void start() {
+            executor.execute(this);
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public void run() {
+            long bytesSent = 0;
+            long lastProgressTime = 0;
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+                 FileChannel channel = randomAccessFile.getChannel()) {
+                final long totalBytes = channel.size();
+                while (bytesSent < totalBytes) {
+                    long windowSize = Math.min(MAP_WINDOW_SIZE, totalBytes - bytesSent);
+                    MappedByteBuffer window =
+                            channel.map(FileChannel.MapMode.READ_ONLY, bytesSent, windowSize);
+                    while (window.hasRemaining()) {
+                        boolean open = observer.awaitBufferedAmountAtMost(maxBufferedAmount - chunkSize);
+                        if (cancelled) {
+                            throw new CancellationException("cancelled after "
+                                    + bytesSent + " of " + totalBytes + " bytes");
+                        }
+                        if (!open) {
+                            throw new IOException("data channel closed after "
+                                    + bytesSent + " of " + totalBytes + " bytes");
+                        }
+                        int length = Math.min(chunkSize, window.remaining());
+                        ByteBuffer chunk = window.slice();
+                        chunk.limit(length);
+                        window.position(window.position() + length);
+                        if (!observer.send(new DataChannel.Buffer(chunk, true))) {
+                            throw new IOException("send failed after "
+                                    + bytesSent + " of " + totalBytes + " bytes");
+                        }
+                        bytesSent += length;
+
+                        long now = SystemClock.elapsedRealtime();
+                        if (now - lastProgressTime >= PROGRESS_INTERVAL_MS) {
+                            lastProgressTime = now;
+                            sendProgress(observer, "send", file, bytesSent, totalBytes);
+                        }
+                    }
+                }
+                sendProgress(observer, "send", file, bytesSent, totalBytes);
+                ConstraintsMap params = new ConstraintsMap();
+                params.putLong("bytesSent", bytesSent);
+                result.success(params.toMap());
+            } catch (CancellationException e) {
+                Log.d(TAG, "dataChannelSendFile() " + e.getMessage());
+                result.error("dataChannelSendFileCancelled", "dataChannelSendFile(): " + e.getMessage(), null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                Log.e(TAG, "dataChannelSendFile() interrupted after " + bytesSent + " bytes");
+                result.error("dataChannelSendFile", "dataChannelSendFile(): interrupted after "
+                        + bytesSent + " bytes", null);
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "dataChannelSendFile() failed: " + e);
+                result.error("dataChannelSendFile", "dataChannelSendFile(): " + e.getMessage(), null);
+            } finally {
+                observer.onFileSendFinished(this);
+            }
+        }
+    }
+
+    /**
+     * Writes to the file on a serial writer thread of its own, so that a slow
+     * disk does not hold up the signaling thread that delivers messages.
+     */
+    static class Receiver {
+        private final DataChannelObserver observer;
+        private final File file;
+        private final long expectedBytes;
+        private final FileOutputStream outputStream;
+        private final FileChannel channel;
+        private final ExecutorService writer =
+                Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "DataChannelFileWriter"));
+        // Guarded by the observer.
+        private long bytesQueued = 0;
+        // Only used on the writer, and read once it is done.
+        private volatile long bytesReceived = 0;
+        private volatile String error;
+        private long lastProgressTime = 0;
+
+        /**
+         * @param expectedBytes the size of the incoming file, or a non-positive
+         *                      value if the receive is ended explicitly.
+         */
+        Receiver(DataChannelObserver observer, String path, long expectedBytes) throws IOException {
+            this.observer = observer;
+            this.file = new File(path);
+            this.expectedBytes = expectedBytes;
+            this.outputStream = new FileOutputStream(file);
+            this.channel = outputStream.getChannel();
+        }
+
+        /**
+         * Queues {@code data} to be written to the file. Called on the
+         * signaling thread from {@code onMessage}; the buffer is only valid
+         * for the duration of that callback, so it is copied.
+         *
+         * @return {@code true} once {@code expectedBytes} have been received,
+         * or a write has failed; the caller then calls {@link #finish}.
+         */
+        boolean write(ByteBuffer data) {
+            ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+            copy.put(data);
+            copy.flip();
+            bytesQueued += copy.remaining();
+            writer.execute(() -> writeChunk(copy));
+            return error != null || (expectedBytes > 0 && bytesQueued >= expectedBytes);
+        }
+
+        /**
+         * Closes the file once the queued chunks are written. Then answers
+         * {@code result} with the bytes received, if given, or else sends
+         * {@code dataChannelFileReceiveComplete} if {@code sendEvent} is set.
+         */
+        void finish(@Nullable Result result, boolean sendEvent) {
+            writer.execute(() -> {
+                try {
+                    outputStream.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "dataChannelReceiveFile() close failed: " + e.getMessage());
+                }
+                if (result != null) {
+                    ConstraintsMap params = new ConstraintsMap();
+                    params.putLong("bytesReceived", bytesReceived);
+                    if (error != null) {
+                        params.putString("error", error);
+                    }
+                    result.success(params.toMap());
+                } else if (sendEvent) {
+                    sendProgress(observer, "receive", file, bytesReceived, expectedBytes);
+                    ConstraintsMap params = new ConstraintsMap();
+                    params.putString("event", "dataChannelFileReceiveComplete");
+                    params.putLong("bytesReceived", bytesReceived);
+                    if (error != null) {
+                        params.putString("error", error);
+                    }
+                    observer.sendFileEvent(params);
+                }
+            });
+            writer.shutdown();
+        }
+
+        private void writeChunk(ByteBuffer data) {
+            if (error != null) {
+                return;
+            }
+            try {
+                while (data.hasRemaining()) {
+                    bytesReceived += channel.write(data);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "dataChannelReceiveFile() write failed: " + e.getMessage());
+                error = e.getMessage();
+                return;
+            }
+            long now = SystemClock.elapsedRealtime();
+            if (now - lastProgressTime >= PROGRESS_INTERVAL_MS) {
+                lastProgressTime = now;
+                sendProgress(observer, "receive", file, bytesReceived, expectedBytes);
+            }
+        }
+    }
+
+    private static void sendProgress(DataChannelObserver observer, String direction, File file,
+                                     long bytes, long totalBytes) {
+        ConstraintsMap params = new ConstraintsMap();
+        params.putString("event", "dataChannelFileTransferProgress");
+        params.putString("direction", direction);
+        params.putString("path", file.getPath());
+        params.putLong("bytes", bytes);
+        params.putLong("totalBytes", totalBytes);
+        observer.sendFileEvent(params);
+    }
+}
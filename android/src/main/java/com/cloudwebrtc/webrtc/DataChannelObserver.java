@@ -2,15 +2,19 @@ package com.cloudwebrtc.webrtc;
 
 import com.cloudwebrtc.webrtc.utils.AnyThreadSink;
 import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+import com.cloudwebrtc.webrtc.utils.EventMap;
 
 import org.webrtc.DataChannel;
 
+import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Map;
 
 import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.EventChannel;
+import io.flutter.plugin.common.MethodChannel.Result;
 
 class DataChannelObserver implements DataChannel.Observer, EventChannel.StreamHandler {
 
@@ -18,9 +22,27 @@ class DataChannelObserver implements DataChannel.Observer, EventChannel.StreamHa
     private final DataChannel dataChannel;
 
     private final EventChannel eventChannel;
-    private EventChannel.EventSink eventSink;
+    private AnyThreadSink eventSink;
     private final ArrayList eventQueue = new ArrayList();
 
+    /**
+     * The W3C {@code bufferedAmountLowThreshold}; a single
+     * {@code dataChannelBufferedAmountLow} event is sent each time the buffered
+     * amount falls from above this value to at or below it.
+     */
+    private volatile long bufferedAmountLowThreshold = 0;
+    /**
+     * Whether a {@code dataChannelBufferedAmountChange} event is sent for every
+     * change of the buffered amount. Senders relying on the low threshold can
+     * turn this off to avoid an event per SCTP acknowledgement.
+     */
+    private volatile boolean bufferedAmountChangeEventsEnabled = true;
+    private volatile DataChannelSendQueue sendQueue;
+
+    private final Object bufferedAmountLock = new Object();
+    private DataChannelFileTransfer.Sender fileSender;
+    private DataChannelFileTransfer.Receiver fileReceiver;
+
     DataChannelObserver(BinaryMessenger messenger, String peerConnectionId, String flutterId,
                         DataChannel dataChannel) {
         this.flutterId = flutterId;
@@ -58,30 +80,188 @@ class DataChannelObserver implements DataChannel.Observer, EventChannel.StreamHa
         eventSink = null;
     }
     
-    @Override
-    public void onBufferedAmountChange(long amount) {
-        ConstraintsMap params = new ConstraintsMap();
-        params.putString("event", "dataChannelBufferedAmountChange");
+    void setBufferedAmountLowThreshold(long threshold, boolean bufferedAmountChangeEventsEnabled) {
+        this.bufferedAmountLowThreshold = threshold;
+        this.bufferedAmountChangeEventsEnabled = bufferedAmountChangeEventsEnabled;
+    }
+
+    /**
+     * Enables pacing of {@link #send} so that no more than {@code maxBufferedAmount}
+     * bytes are handed to the SCTP transport at a time, or disables it when
+     * {@code maxBufferedAmount} is not positive. Buffers still queued when the
+     * queue is replaced or disabled are dropped.
+     */
+    void setSendQueue(long maxBufferedAmount) {
+        DataChannelSendQueue oldQueue = sendQueue;
+        sendQueue = maxBufferedAmount > 0
+                ? new DataChannelSendQueue(dataChannel, maxBufferedAmount) : null;
+        if (oldQueue != null) {
+            oldQueue.clear();
+        }
+    }
+
+    boolean send(DataChannel.Buffer buffer) {
+        DataChannelSendQueue queue = sendQueue;
+        if (queue != null) {
+            return queue.send(buffer);
+        }
+        return dataChannel.send(buffer);
+    }
+
+    long getQueuedAmount() {
+        DataChannelSendQueue queue = sendQueue;
+        return queue == null ? 0 : queue.getQueuedAmount();
+    }
+
+    void close() {
+        DataChannelSendQueue queue = sendQueue;
+        if (queue != null) {
+            queue.clear();
+        }
+        synchronized (this) {
+            if (fileSender != null) {
+                fileSender.cancel();
+            }
+            if (fileReceiver != null) {
+                fileReceiver.finish(null, false);
+                fileReceiver = null;
+            }
+        }
+        synchronized (bufferedAmountLock) {
+            bufferedAmountLock.notifyAll();
+        }
+    }
+
+    /**
+     * Blocks until the data buffered by the transport and the send queue is at
+     * most {@code amount} bytes.
+     *
+     * @return {@code false} if the data channel is no longer open.
+     */
+    boolean awaitBufferedAmountAtMost(long amount) throws InterruptedException {
+        synchronized (bufferedAmountLock) {
+            while (dataChannel.bufferedAmount() + getQueuedAmount() > amount) {
+                if (dataChannel.state() != DataChannel.State.OPEN) {
+                    return false;
+                }
+                // Bounded wait in case a notification races the check above.
+                bufferedAmountLock.wait(100);
+            }
+        }
+        return dataChannel.state() == DataChannel.State.OPEN;
+    }
+
+    synchronized void sendFile(String path, int chunkSize, long maxBufferedAmount, Result result) {
+        if (fileSender != null) {
+            result.error("dataChannelSendFile", "dataChannelSendFile(): a file is already being sent", null);
+            return;
+        }
+        fileSender = new DataChannelFileTransfer.Sender(this, path, chunkSize, maxBufferedAmount, result);
+        fileSender.start();
+    }
+
+    synchronized void onFileSendFinished(DataChannelFileTransfer.Sender sender) {
+        if (fileSender == sender) {
+            fileSender = null;
+        }
+    }
+
+    synchronized void receiveFile(String path, long expectedBytes, Result result) {
+        if (fileReceiver != null) {
+            result.error("dataChannelReceiveFile", "dataChannelReceiveFile(): a file is already being received", null);
+            return;
+        }
+        try {
+            fileReceiver = new DataChannelFileTransfer.Receiver(this, path, expectedBytes);
+            result.success(null);
+        } catch (IOException e) {
+            result.error("dataChannelReceiveFile", "dataChannelReceiveFile(): " + e.getMessage(), null);
+        }
+    }
+
+    synchronized void stopReceiveFile(Result result) {
+        if (fileReceiver == null) {
+            ConstraintsMap params = new ConstraintsMap();
+            params.putLong("bytesReceived", 0);
+            result.success(params.toMap());
+            return;
+        }
+        // Answers once the queued chunks are written.
+        fileReceiver.finish(result, false);
+        fileReceiver = null;
+    }
+
+    void sendFileEvent(ConstraintsMap params) {
         params.putInt("id", dataChannel.id());
-        params.putLong("bufferedAmount", dataChannel.bufferedAmount());
-        params.putLong("changedAmount", amount);
         sendEvent(params);
     }
 
+    /**
+     * Hands a binary message to the active file receiver, if any.
+     *
+     * @return {@code true} if the message was consumed by the receiver.
+     */
+    private synchronized boolean receiveFileChunk(DataChannel.Buffer buffer) {
+        if (fileReceiver == null || !buffer.binary) {
+            return false;
+        }
+        if (fileReceiver.write(buffer.data)) {
+            fileReceiver.finish(null, true);
+            fileReceiver = null;
+        }
+        return true;
+    }
+
+    @Override
+    public void onBufferedAmountChange(long previousAmount) {
+        DataChannelSendQueue queue = sendQueue;
+        if (queue != null) {
+            queue.drain();
+        }
+        synchronized (bufferedAmountLock) {
+            bufferedAmountLock.notifyAll();
+        }
+
+        long bufferedAmount = dataChannel.bufferedAmount();
+        if (bufferedAmountChangeEventsEnabled) {
+            Map<String, Object> params = EventMap.event("dataChannelBufferedAmountChange", 3)
+                    .put("id", dataChannel.id())
+                    .put("bufferedAmount", bufferedAmount)
+                    .put("changedAmount", previousAmount)
+                    .toMap();
+            // Not coalesced: each event must stay ordered with the
+            // dataChannelBufferedAmountLow events and keep its changedAmount.
+            sendEvent(params);
+        }
+
+        long threshold = bufferedAmountLowThreshold;
+        if (previousAmount > threshold && bufferedAmount <= threshold) {
+            sendEvent(EventMap.event("dataChannelBufferedAmountLow", 3)
+                    .put("id", dataChannel.id())
+                    .put("bufferedAmount", bufferedAmount)
+                    .put("queuedAmount", getQueuedAmount())
+                    .toMap());
+        }
+    }
+
     @Override
     public void onStateChange() {
-        ConstraintsMap params = new ConstraintsMap();
-        params.putString("event", "dataChannelStateChanged");
-        params.putInt("id", dataChannel.id());
-        params.putString("state", dataChannelStateString(dataChannel.state()));
-        sendEvent(params);
+        sendEvent(EventMap.event("dataChannelStateChanged", 2)
+                .put("id", dataChannel.id())
+                .put("state", dataChannelStateString(dataChannel.state()))
+                .toMap());
+        synchronized (bufferedAmountLock) {
+            bufferedAmountLock.notifyAll();
+        }
     }
 
     @Override
     public void onMessage(DataChannel.Buffer buffer) {
-        ConstraintsMap params = new ConstraintsMap();
-        params.putString("event", "dataChannelReceiveMessage");
-        params.putInt("id", dataChannel.id());
+        if (receiveFileChunk(buffer)) {
+            return;
+        }
+        EventMap params = EventMap.event("dataChannelReceiveMessage", 3)
+                .put("id", dataChannel.id());
 
         byte[] bytes;
         if (buffer.data.hasArray()) {
@@ -92,21 +272,25 @@ class DataChannelObserver implements DataChannel.Observer, EventChannel.StreamHa
         }
 
         if (buffer.binary) {
-            params.putString("type", "binary");
-            params.putByte("data", bytes);
+            params.put("type", "binary");
+            params.put("data", bytes);
         } else {
-            params.putString("type", "text");
-            params.putString("data", new String(bytes, StandardCharsets.UTF_8));
+            params.put("type", "text");
+            params.put("data", new String(bytes, StandardCharsets.UTF_8));
         }
 
-        sendEvent(params);
+        sendEvent(params.toMap());
     }
 
     private void sendEvent(ConstraintsMap params) {
+        sendEvent(params.toMap());
+    }
+
+    private void sendEvent(Map<String, Object> params) {
         if (eventSink != null) {
-            eventSink.success(params.toMap());
+            eventSink.success(params);
         } else {
-            eventQueue.add(params.toMap());
+            eventQueue.add(params);
         }
     }
 }
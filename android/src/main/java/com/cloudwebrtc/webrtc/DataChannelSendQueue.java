@@ -0,0 +1,78 @@
+package com.cloudwebrtc.webrtc;
+
+import org.webrtc.DataChannel;
+
+import java.util.ArrayDeque;
+
+/**
+ * Paces {@link DataChannel#send} so the amount of data buffered by the SCTP
+ * transport never grows past {@code maxBufferedAmount}. Buffers which do not
+ * fit are kept in order and flushed from {@link #drain()}, which the owning
+ * {@link DataChannelObserver} calls whenever the buffered amount changes.
+ *
+ * Sends come from the platform thread while drains come from the WebRTC
+ * signaling thread, so all state is guarded by the queue itself.
+ */
+class DataChannelSendQueue {
+
+    private final DataChannel dataChannel;
+    private final long maxBufferedAmount;
+    private final ArrayDeque<DataChannel.Buffer> queue = new ArrayDeque<>();
+    private long queuedAmount = 0;
+
+    DataChannelSendQueue(DataChannel dataChannel, long maxBufferedAmount) {
+        this.dataChannel = dataChannel;
+        this.maxBufferedAmount = maxBufferedAmount;
+    }
+
+    /**
+     * Sends {@code buffer} right away if nothing is waiting ahead of it and
+     * the transport has room for it or has fully drained, otherwise queues
+     * it. Like in {@link #drain()}, a message larger than
+     * {@code maxBufferedAmount} is still sent on an idle channel, since no
+     * buffered amount change would ever flush it from the queue.
+     *
+     * @return {@code false} if the data channel refused the buffer.
+     */
+    synchronized boolean send(DataChannel.Buffer buffer) {
+        if (queue.isEmpty() && (fits(buffer) || dataChannel.bufferedAmount() == 0)) {
+            return dataChannel.send(buffer);
+        }
+        queue.add(buffer);
+        queuedAmount += buffer.data.remaining();
+        return true;
+    }
+
+    /**
+     * Flushes as many queued buffers as the transport currently has room for.
+     * At least one buffer is always sent once the transport has fully drained,
+     * so messages larger than {@code maxBufferedAmount} cannot stall the queue.
+     */
+    synchronized void drain() {
+        while (!queue.isEmpty()) {
+            DataChannel.Buffer buffer = queue.peek();
+            if (!fits(buffer) && dataChannel.bufferedAmount() > 0) {
+                return;
+            }
+            queue.poll();
+            queuedAmount -= buffer.data.remaining();
+            if (!dataChannel.send(buffer)) {
+                clear();
+                return;
+            }
+        }
+    }
+
+    synchronized long getQueuedAmount() {
+        return queuedAmount;
+    }
+
+    synchronized void clear() {
+        queue.clear();
+        queuedAmount = 0;
+    }
+
+    private boolean fits(DataChannel.Buffer buffer) {
+        return dataChannel.bufferedAmount() + buffer.data.remaining() <= maxBufferedAmount;
+    }
+}
@@ -0,0 +1,316 @@
+package com.cloudwebrtc.webrtc;
+
+import android.graphics.Matrix;
+import android.graphics.SurfaceTexture;
+import android.opengl.GLES20;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.webrtc.EglBase;
+import org.webrtc.GlRectDrawer;
+import org.webrtc.ThreadUtils;
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoFrameDrawer;
+import org.webrtc.VideoSink;
+import org.webrtc.VideoTrack;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import io.flutter.view.TextureRegistry;
+
+/**
+ * Draws several {@link VideoTrack}s into a single Flutter texture, e.g. for a
+ * gallery view, using one render thread, one EGL surface and one
+ * {@link GlRectDrawer} instead of one of each per track.
+ *
+ * The latest frame of every tile is kept, and frames arriving within the same
+ * composition interval are coalesced into a single pass that redraws the
+ * whole grid.
+ */
+public class FlutterRTCVideoCompositor {
+    private static final String TAG = FlutterWebRTCPlugin.TAG;
+    static final int DEFAULT_MAX_FPS = 30;
+
+    /**
+     * The position of a track in the output texture, in fractions of the
+     * texture's width and height with the origin at the top left.
+     */
+    static class TileLayout {
+        final VideoTrack track;
+        final float x, y, width, height;
+        final boolean mirror;
+
+        TileLayout(VideoTrack track, float x, float y, float width, float height, boolean mirror) {
+            this.track = track;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.mirror = mirror;
+        }
+    }
+
+    private final class Tile implements VideoSink {
+        final VideoTrack track;
+        // Guarded by lock.
+        TileLayout layout;
+        VideoFrame frame;
+
+        Tile(TileLayout layout) {
+            this.track = layout.track;
+            this.layout = layout;
+        }
+
+        @Override
+        public void onFrame(VideoFrame videoFrame) {
+            synchronized (lock) {
+                if (released) {
+                    return;
+                }
+                if (frame != null) {
+                    frame.release();
+                }
+                videoFrame.retain();
+                frame = videoFrame;
+            }
+            scheduleComposition();
+        }
+    }
+
+    private final TextureRegistry.SurfaceTextureEntry entry;
+    private final SurfaceTexture texture;
+    private final HandlerThread renderThread;
+    private final Handler handler;
+    private final Runnable composeRunnable = this::compose;
+    private final Matrix drawMatrix = new Matrix();
+
+    private final Object lock = new Object();
+    // Guarded by lock.
+    private final Map<String, Tile> tiles = new HashMap<>();
+    private final List<Tile> tileOrder = new ArrayList<>();
+    private int outputWidth;
+    private int outputHeight;
+    private long minCompositionIntervalMs = 1000 / DEFAULT_MAX_FPS;
+    private long nextCompositionTimeMs;
+    private boolean compositionScheduled;
+    private boolean released;
+
+    // Only accessed on the render thread.
+    private EglBase eglBase;
+    private GlRectDrawer drawer;
+    private VideoFrameDrawer frameDrawer;
+
+    public FlutterRTCVideoCompositor(SurfaceTexture texture, TextureRegistry.SurfaceTextureEntry entry,
+                                     final EglBase.Context sharedContext) {
+        this.texture = texture;
+        this.entry = entry;
+        renderThread = new HandlerThread("VideoCompositor" + entry.id());
+        renderThread.start();
+        handler = new Handler(renderThread.getLooper());
+        handler.post(() -> {
+            try {
+                eglBase = EglBase.create(sharedContext, EglBase.CONFIG_PLAIN);
+                eglBase.createSurface(texture);
+                eglBase.makeCurrent();
+                drawer = new GlRectDrawer();
+                frameDrawer = new VideoFrameDrawer();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "FlutterRTCVideoCompositor: failed to create EGL surface", e);
+                if (eglBase != null) {
+                    eglBase.release();
+                    eglBase = null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Replaces the layout. Tracks no longer in {@code layouts} stop being
+     * rendered; tiles are drawn in list order, so later tiles overlap earlier
+     * ones.
+     *
+     * @param width  the size of the output texture in pixels.
+     * @param height the size of the output texture in pixels.
+     * @param maxFps the maximum number of composition passes per second, or
+     *               0 for {@link #DEFAULT_MAX_FPS}.
+     */
+    public void setLayout(int width, int height, int maxFps, List<TileLayout> layouts) {
+        ThreadUtils.checkIsOnMainThread();
+        List<Tile> added = new ArrayList<>();
+        List<Tile> removed = new ArrayList<>();
+        synchronized (lock) {
+            if (released) {
+                return;
+            }
+            Map<String, Tile> previous = new HashMap<>(tiles);
+            tiles.clear();
+            tileOrder.clear();
+            for (TileLayout layout : layouts) {
+                String trackId = layout.track.id();
+                if (tiles.containsKey(trackId)) {
+                    continue;
+                }
+                Tile tile = previous.remove(trackId);
+                if (tile == null || tile.track != layout.track) {
+                    if (tile != null) {
+                        removed.add(tile);
+                    }
+                    tile = new Tile(layout);
+                    added.add(tile);
+                }
+                tile.layout = layout;
+                tiles.put(trackId, tile);
+                tileOrder.add(tile);
+            }
+            removed.addAll(previous.values());
+            if (width > 0 && height > 0 && (width != outputWidth || height != outputHeight)) {
+                outputWidth = width;
+                outputHeight = height;
+                texture.setDefaultBufferSize(width, height);
+            }
+            minCompositionIntervalMs = 1000 / (maxFps > 0 ? maxFps : DEFAULT_MAX_FPS);
+        }
+        for (Tile tile : removed) {
+            removeTile(tile);
+        }
+        for (Tile tile : added) {
+            tile.track.addSink(tile);
+        }
+        scheduleComposition();
+    }
+
+    public void Dispose() {
+        ThreadUtils.checkIsOnMainThread();
+        List<Tile> removed;
+        synchronized (lock) {
+            released = true;
+            removed = new ArrayList<>(tileOrder);
+            tiles.clear();
+            tileOrder.clear();
+        }
+        for (Tile tile : removed) {
+            removeTile(tile);
+        }
+        final CountDownLatch completionLatch = new CountDownLatch(1);
+        handler.removeCallbacks(composeRunnable);
+        boolean posted = handler.post(() -> {
+            if (eglBase != null) {
+                eglBase.makeCurrent();
+                drawer.release();
+                frameDrawer.release();
+                eglBase.release();
+                eglBase = null;
+            }
+            completionLatch.countDown();
+        });
+        if (posted) {
+            ThreadUtils.awaitUninterruptibly(completionLatch);
+        }
+        renderThread.quitSafely();
+        entry.release();
+    }
+
+    private void removeTile(Tile tile) {
+        tile.track.removeSink(tile);
+        synchronized (lock) {
+            if (tile.frame != null) {
+                tile.frame.release();
+                tile.frame = null;
+            }
+        }
+    }
+
+    private void scheduleComposition() {
+        synchronized (lock) {
+            if (compositionScheduled || released) {
+                return;
+            }
+            compositionScheduled = true;
+            long delayMs = nextCompositionTimeMs - SystemClock.uptimeMillis();
+            handler.postDelayed(composeRunnable, Math.max(0, delayMs));
+        }
+    }
+
+    private void compose() {
+        final int width;
+        final int height;
+        final TileLayout[] layouts;
+        final VideoFrame[] frames;
+        synchronized (lock) {
+            compositionScheduled = false;
+            if (released) {
+                return;
+            }
+            nextCompositionTimeMs = SystemClock.uptimeMillis() + minCompositionIntervalMs;
+            width = outputWidth;
+            height = outputHeight;
+            layouts = new TileLayout[tileOrder.size()];
+            frames = new VideoFrame[tileOrder.size()];
+            for (int i = 0; i < layouts.length; i++) {
+                Tile tile = tileOrder.get(i);
+                layouts[i] = tile.layout;
+                frames[i] = tile.frame;
+                if (frames[i] != null) {
+                    frames[i].retain();
+                }
+            }
+        }
+        try {
+            if (eglBase != null && eglBase.hasSurface() && width > 0 && height > 0) {
+                eglBase.makeCurrent();
+                GLES20.glViewport(0, 0, width, height);
+                GLES20.glClearColor(0, 0, 0, 1);
+                GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+                for (int i = 0; i < layouts.length; i++) {
+                    if (frames[i] != null) {
+                        drawTile(frames[i], layouts[i], width, height);
+                    }
+                }
+                eglBase.swapBuffers();
+            }
+        } finally {
+            for (VideoFrame frame : frames) {
+                if (frame != null) {
+                    frame.release();
+                }
+            }
+        }
+    }
+
+    private void drawTile(VideoFrame frame, TileLayout layout, int width, int height) {
+        int viewportX = Math.round(layout.x * width);
+        int viewportWidth = Math.round(layout.width * width);
+        int viewportHeight = Math.round(layout.height * height);
+        // GL's origin is the bottom left corner.
+        int viewportY = height - Math.round((layout.y + layout.height) * height);
+        if (viewportWidth <= 0 || viewportHeight <= 0) {
+            return;
+        }
+
+        // Crop the frame to fill the tile, as RTCVideoViewObjectFit.cover does.
+        final float frameAspectRatio = frame.getRotatedWidth() / (float) frame.getRotatedHeight();
+        final float tileAspectRatio = viewportWidth / (float) viewportHeight;
+        final float scaleX;
+        final float scaleY;
+        if (frameAspectRatio > tileAspectRatio) {
+            scaleX = tileAspectRatio / frameAspectRatio;
+            scaleY = 1f;
+        } else {
+            scaleX = 1f;
+            scaleY = frameAspectRatio / tileAspectRatio;
+        }
+        drawMatrix.reset();
+        drawMatrix.preTranslate(0.5f, 0.5f);
+        drawMatrix.preScale(layout.mirror ? -1f : 1f, 1f);
+        drawMatrix.preScale(scaleX, scaleY);
+        drawMatrix.preTranslate(-0.5f, -0.5f);
+        frameDrawer.drawFrame(frame, drawer, drawMatrix,
+                viewportX, viewportY, viewportWidth, viewportHeight);
+    }
+}
@@ -4,12 +4,15 @@ import android.util.Log;
 import android.graphics.SurfaceTexture;
 
 import com.cloudwebrtc.webrtc.utils.AnyThreadSink;
-import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
 import com.cloudwebrtc.webrtc.utils.EglUtils;
+import com.cloudwebrtc.webrtc.utils.EventMap;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
-import org.webrtc.EglBase;
 import org.webrtc.MediaStream;
 import org.webrtc.RendererCommon.RendererEvents;
 import org.webrtc.VideoTrack;
@@ -20,6 +23,34 @@ import io.flutter.view.TextureRegistry;
 public class FlutterRTCVideoRenderer implements EventChannel.StreamHandler {
 
     private static final String TAG = FlutterWebRTCPlugin.TAG;
+
+    /** Render every frame. */
+    static final String RENDER_POLICY_VISIBLE = "visible";
+    /** Render at a reduced frame rate, e.g. for small or partly hidden tiles. */
+    static final String RENDER_POLICY_THUMBNAIL = "thumbnail";
+    /** Keep the last frame and stop receiving new ones, e.g. for off-screen tiles. */
+    static final String RENDER_POLICY_PAUSED = "paused";
+    static final float DEFAULT_THUMBNAIL_FPS = 15f;
+
+    /**
+     * Receive quality hints, named after the usual three simulcast layers of
+     * a 1280x720 source sent at scaleResolutionDownBy 4, 2 and 1.
+     */
+    static final String RECEIVE_QUALITY_OFF = "off";
+    static final String RECEIVE_QUALITY_LOW = "low";
+    static final String RECEIVE_QUALITY_MEDIUM = "medium";
+    static final String RECEIVE_QUALITY_HIGH = "high";
+    private static final int LOW_QUALITY_MAX_DIMENSION = 320;
+    private static final int MEDIUM_QUALITY_MAX_DIMENSION = 640;
+
+    /**
+     * Size and rotation changes within this window after the last delivered
+     * one are collapsed into a single event, so senders adapting their
+     * resolution do not flood the main thread.
+     */
+    private static final long RESOLUTION_EVENT_WINDOW_MS = 200;
+    private static final int MAX_CACHED_SIZE_EVENTS = 8;
+
     private final SurfaceTexture texture;
     private final TextureRegistry.SurfaceTextureEntry entry;
     private int id = -1;
@@ -29,6 +60,9 @@ public class FlutterRTCVideoRenderer implements EventChannel.StreamHandler {
 
     public void Dispose() {
         //destroy
+        if (videoTrack != null) {
+            removeRendererFromVideoTrack();
+        }
         if (surfaceTextureRenderer != null) {
             surfaceTextureRenderer.release();
         }
@@ -52,11 +86,10 @@ public class FlutterRTCVideoRenderer implements EventChannel.StreamHandler {
 
             @Override
             public void onFirstFrameRendered() {
-                ConstraintsMap params = new ConstraintsMap();
-                params.putString("event", "didFirstFrameRendered");
-                params.putInt("id", id);
                 if (eventSink != null) {
-                    eventSink.success(params.toMap());
+                    eventSink.success(EventMap.event("didFirstFrameRendered", 1)
+                            .put("id", id)
+                            .toMap());
                 }
             }
 
@@ -65,45 +98,117 @@ public class FlutterRTCVideoRenderer implements EventChannel.StreamHandler {
                     int videoWidth, int videoHeight,
                     int rotation) {
 
+                boolean rotated = rotation % 180 != 0;
+                onFrameSizeChanged(rotated ? videoHeight : videoWidth,
+                        rotated ? videoWidth : videoHeight);
+
                 if (eventSink != null) {
                     if (_width != videoWidth || _height != videoHeight) {
-                        ConstraintsMap params = new ConstraintsMap();
-                        params.putString("event", "didTextureChangeVideoSize");
-                        params.putInt("id", id);
-                        params.putDouble("width", (double) videoWidth);
-                        params.putDouble("height", (double) videoHeight);
                         _width = videoWidth;
                         _height = videoHeight;
-                        eventSink.success(params.toMap());
+                        eventSink.successDebounced("didTextureChangeVideoSize",
+                                sizeEvent(videoWidth, videoHeight), RESOLUTION_EVENT_WINDOW_MS);
                     }
 
                     if (_rotation != rotation) {
-                        ConstraintsMap params2 = new ConstraintsMap();
-                        params2.putString("event", "didTextureChangeRotation");
-                        params2.putInt("id", id);
-                        params2.putInt("rotation", rotation);
                         _rotation = rotation;
-                        eventSink.success(params2.toMap());
+                        eventSink.successDebounced("didTextureChangeRotation",
+                                rotationEvent(rotation), RESOLUTION_EVENT_WINDOW_MS);
                     }
                 }
             }
         };
     }
 
-    private final SurfaceTextureRenderer surfaceTextureRenderer;
+    /**
+     * Immutable size events by {@code width << 32 | height}, for the few
+     * resolutions an adaptive sender switches between. Least recently used
+     * first.
+     */
+    private final LinkedHashMap<Long, Map<String, Object>> sizeEvents =
+            new LinkedHashMap<Long, Map<String, Object>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Map<String, Object>> eldest) {
+                    return size() > MAX_CACHED_SIZE_EVENTS;
+                }
+            };
+    /**
+     * Immutable rotation events by rotation.
+     */
+    private final HashMap<Integer, Map<String, Object>> rotationEvents = new HashMap<>();
+
+    private Map<String, Object> sizeEvent(int width, int height) {
+        long key = ((long) width << 32) | (height & 0xffffffffL);
+        synchronized (sizeEvents) {
+            Map<String, Object> event = sizeEvents.get(key);
+            if (event == null) {
+                event = Collections.unmodifiableMap(EventMap.event("didTextureChangeVideoSize", 3)
+                        .put("id", id)
+                        .put("width", (double) width)
+                        .put("height", (double) height)
+                        .toMap());
+                sizeEvents.put(key, event);
+            }
+            return event;
+        }
+    }
+
+    private Map<String, Object> rotationEvent(int rotation) {
+        synchronized (rotationEvents) {
+            Map<String, Object> event = rotationEvents.get(rotation);
+            if (event == null) {
+                event = Collections.unmodifiableMap(EventMap.event("didTextureChangeRotation", 2)
+                        .put("id", id)
+                        .put("rotation", rotation)
+                        .toMap());
+                rotationEvents.put(rotation, event);
+            }
+            return event;
+        }
+    }
+
+    private final TextureRenderer surfaceTextureRenderer;
 
     /**
      * The {@code VideoTrack}, if any, rendered by this {@code FlutterRTCVideoRenderer}.
      */
     private VideoTrack videoTrack;
 
+    // Written on the main thread, also read by updateReceiveHint on the
+    // render thread.
+    private volatile String renderPolicy = RENDER_POLICY_VISIBLE;
+    private float renderPolicyFps = 0;
+    /**
+     * Whether {@link #surfaceTextureRenderer} is currently a sink of {@link #videoTrack}.
+     */
+    private boolean sinkAttached = false;
+
+    // Guarded by receiveHintLock.
+    private final Object receiveHintLock = new Object();
+    private int viewWidth = 0, viewHeight = 0;
+    private int frameWidth = 0, frameHeight = 0;
+    private String hintedTrackId;
+    private String hintedQuality;
+
     EventChannel eventChannel;
-    EventChannel.EventSink eventSink;
+    AnyThreadSink eventSink;
 
     public FlutterRTCVideoRenderer(SurfaceTexture texture, TextureRegistry.SurfaceTextureEntry entry) {
-        this.surfaceTextureRenderer = new SurfaceTextureRenderer("");
+        this(texture, entry, null);
+    }
+
+    /**
+     * @param renderThreadPool if not {@code null}, frames are drawn on a thread
+     *                         shared with other renderers instead of a
+     *                         dedicated one.
+     */
+    FlutterRTCVideoRenderer(SurfaceTexture texture, TextureRegistry.SurfaceTextureEntry entry,
+                            TextureRenderThreadPool renderThreadPool) {
+        this.surfaceTextureRenderer = renderThreadPool != null
+                ? new PooledTextureRenderer(renderThreadPool)
+                : new SurfaceTextureRenderer("");
         listenRendererEvents();
-        surfaceTextureRenderer.init(EglUtils.getRootEglBaseContext(), rendererEvents);
+        surfaceTextureRenderer.init(EglUtils.getEglBaseContext(EglUtils.Subsystem.RENDER), rendererEvents);
         surfaceTextureRenderer.surfaceCreated(texture);
 
         this.texture = texture;
@@ -116,8 +221,18 @@ public class FlutterRTCVideoRenderer implements EventChannel.StreamHandler {
         this.eventChannel = eventChannel;
     }
 
+    public int getId() {
+        return id;
+    }
+
     public void setId(int id) {
         this.id = id;
+        synchronized (sizeEvents) {
+            sizeEvents.clear();
+        }
+        synchronized (rotationEvents) {
+            rotationEvents.clear();
+        }
     }
 
     @Override
@@ -135,7 +250,137 @@ public class FlutterRTCVideoRenderer implements EventChannel.StreamHandler {
      * resources (if rendering is in progress).
      */
     private void removeRendererFromVideoTrack() {
-        videoTrack.removeSink(surfaceTextureRenderer);
+        if (sinkAttached) {
+            videoTrack.removeSink(surfaceTextureRenderer);
+            sinkAttached = false;
+        }
+    }
+
+    /**
+     * Throttles or pauses rendering of this texture, e.g. depending on its
+     * visibility in a scrolling grid.
+     *
+     * @param policy one of {@link #RENDER_POLICY_VISIBLE}, {@link #RENDER_POLICY_THUMBNAIL}
+     *               or {@link #RENDER_POLICY_PAUSED}. A paused renderer is
+     *               detached from its track so it does not even receive frames.
+     * @param fps    the frame rate for {@link #RENDER_POLICY_THUMBNAIL}, or 0 for
+     *               {@link #DEFAULT_THUMBNAIL_FPS}.
+     * @return {@code false} if {@code policy} is not known.
+     */
+    public boolean setRenderPolicy(String policy, float fps) {
+        switch (policy) {
+            case RENDER_POLICY_VISIBLE:
+            case RENDER_POLICY_THUMBNAIL:
+            case RENDER_POLICY_PAUSED:
+                break;
+            default:
+                return false;
+        }
+        renderPolicy = policy;
+        renderPolicyFps = fps;
+        applyRenderPolicy();
+        return true;
+    }
+
+    /**
+     * Frame counters, render times and capture-to-render latencies, see
+     * {@link VideoRendererStats}.
+     */
+    public Map<String, Object> getStats() {
+        return surfaceTextureRenderer.getStats().toMap();
+    }
+
+    /**
+     * Sets the on-screen size of the texture, in physical pixels, and reports
+     * the matching receive quality with a {@code didTextureRequestReceiveQuality}
+     * event whenever it changes. The app forwards the hint through its own
+     * signaling (e.g. to an SFU) so a small tile is sent a lower simulcast
+     * layer instead of decoding the full resolution only to downscale it.
+     * The texture buffer is also sized down to match, see {@link TextureBufferSize}.
+     */
+    public void setViewSize(int width, int height) {
+        synchronized (receiveHintLock) {
+            viewWidth = width;
+            viewHeight = height;
+        }
+        surfaceTextureRenderer.setMaxBufferSize(width, height);
+        updateReceiveHint();
+    }
+
+    private void onFrameSizeChanged(int width, int height) {
+        synchronized (receiveHintLock) {
+            frameWidth = width;
+            frameHeight = height;
+        }
+        updateReceiveHint();
+    }
+
+    /**
+     * Picks the smallest layer at least as large as the view.
+     */
+    static String receiveQualityForViewSize(int viewWidth, int viewHeight) {
+        int maxDimension = Math.max(viewWidth, viewHeight);
+        if (maxDimension <= 0) {
+            return RECEIVE_QUALITY_OFF;
+        } else if (maxDimension <= LOW_QUALITY_MAX_DIMENSION) {
+            return RECEIVE_QUALITY_LOW;
+        } else if (maxDimension <= MEDIUM_QUALITY_MAX_DIMENSION) {
+            return RECEIVE_QUALITY_MEDIUM;
+        }
+        return RECEIVE_QUALITY_HIGH;
+    }
+
+    private void updateReceiveHint() {
+        VideoTrack track = videoTrack;
+        AnyThreadSink sink = eventSink;
+        if (track == null || sink == null) {
+            return;
+        }
+        String trackId = track.id();
+        EventMap event;
+        synchronized (receiveHintLock) {
+            if (viewWidth <= 0 || viewHeight <= 0) {
+                // The app has not reported a view size; make no assumptions.
+                return;
+            }
+            String quality = RENDER_POLICY_PAUSED.equals(renderPolicy)
+                    ? RECEIVE_QUALITY_OFF
+                    : receiveQualityForViewSize(viewWidth, viewHeight);
+            if (quality.equals(hintedQuality) && trackId.equals(hintedTrackId)) {
+                return;
+            }
+            hintedQuality = quality;
+            hintedTrackId = trackId;
+            event = EventMap.event("didTextureRequestReceiveQuality", 8)
+                    .put("id", id)
+                    .put("trackId", trackId)
+                    .put("quality", quality)
+                    .put("maxWidth", viewWidth)
+                    .put("maxHeight", viewHeight)
+                    .put("frameWidth", frameWidth)
+                    .put("frameHeight", frameHeight);
+        }
+        sink.success(event.toMap());
+    }
+
+    private void applyRenderPolicy() {
+        if (RENDER_POLICY_THUMBNAIL.equals(renderPolicy)) {
+            surfaceTextureRenderer.setFpsReduction(
+                    renderPolicyFps > 0 ? renderPolicyFps : DEFAULT_THUMBNAIL_FPS);
+        } else {
+            surfaceTextureRenderer.disableFpsReduction();
+        }
+
+        if (videoTrack == null) {
+            return;
+        }
+        if (RENDER_POLICY_PAUSED.equals(renderPolicy)) {
+            removeRendererFromVideoTrack();
+        } else if (!sinkAttached) {
+            videoTrack.addSink(surfaceTextureRenderer);
+            sinkAttached = true;
+        }
+        updateReceiveHint();
     }
 
     /**
@@ -226,22 +471,44 @@ public class FlutterRTCVideoRenderer implements EventChannel.StreamHandler {
      */
     private void tryAddRendererToVideoTrack() throws Exception {
         if (videoTrack != null) {
-            EglBase.Context sharedContext = EglUtils.getRootEglBaseContext();
-
-            if (sharedContext == null) {
-                // If SurfaceViewRenderer#init() is invoked, it will throw a
-                // RuntimeException which will very likely kill the application.
+            if (EglUtils.getRootEglBaseContext() == null) {
+                // Without EGL the renderer cannot have been initialized, and
+                // drawing would throw a RuntimeException which will very
+                // likely kill the application.
                 Log.e(TAG, "Failed to render a VideoTrack!");
                 return;
             }
 
-            surfaceTextureRenderer.release();
+            // Keep the render thread and EGL surface created by the
+            // constructor; only the frame state is reset.
             listenRendererEvents();
-            surfaceTextureRenderer.init(sharedContext, rendererEvents);
-            surfaceTextureRenderer.surfaceCreated(texture);
+            surfaceTextureRenderer.reset(rendererEvents);
 
-            videoTrack.addSink(surfaceTextureRenderer);
+            applyRenderPolicy();
+        }
+    }
+
+    /**
+     * Returns this renderer to its freshly created state, keeping its
+     * texture, render thread and EGL surface, so it can be handed out again
+     * by {@code createVideoRenderer} instead of being disposed.
+     */
+    void recycle() {
+        setStream(null, null);
+        renderPolicy = RENDER_POLICY_VISIBLE;
+        renderPolicyFps = 0;
+        setViewSize(0, 0);
+        synchronized (receiveHintLock) {
+            frameWidth = 0;
+            frameHeight = 0;
+            hintedTrackId = null;
+            hintedQuality = null;
         }
+        surfaceTextureRenderer.disableFpsReduction();
+        listenRendererEvents();
+        surfaceTextureRenderer.reset(rendererEvents);
+        // The next user must not see the previous track's counters.
+        surfaceTextureRenderer.getStats().reset();
     }
 
     public boolean checkMediaStream(String id, String ownerTag) {
@@ -3,6 +3,8 @@ package com.cloudwebrtc.webrtc;
 import android.app.Activity;
 import android.app.Application;
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
 import android.os.Bundle;
 import android.util.Log;
 
@@ -31,6 +33,12 @@ import io.flutter.view.TextureRegistry;
 public class FlutterWebRTCPlugin implements FlutterPlugin, ActivityAware, EventChannel.StreamHandler {
 
     static public final String TAG = "FlutterWebRTCPlugin";
+    /**
+     * Application meta-data which, set to {@code true}, warms up the native
+     * library, EGL, codec and audio setup in the background as soon as the
+     * plugin is attached, see {@link MethodCallHandlerImpl#warmUp}.
+     */
+    static final String WARM_UP_META_DATA = "com.cloudwebrtc.webrtc.WARM_UP_ON_ATTACH";
     private static Application application;
 
     private MethodChannel methodChannel;
@@ -110,6 +118,9 @@ public class FlutterWebRTCPlugin implements FlutterPlugin, ActivityAware, EventC
         methodCallHandler = new MethodCallHandlerImpl(context, messenger, textureRegistry);
         methodChannel = new MethodChannel(messenger, "FlutterWebRTC.Method");
         methodChannel.setMethodCallHandler(methodCallHandler);
+        if (isWarmUpEnabled(context)) {
+            methodCallHandler.warmUp();
+        }
         eventChannel = new EventChannel( messenger,"FlutterWebRTC.Event");
         eventChannel.setStreamHandler(this);
         AudioSwitchManager.instance.audioDeviceChangeListener = (devices, currentDevice) -> {
@@ -121,6 +132,16 @@ public class FlutterWebRTCPlugin implements FlutterPlugin, ActivityAware, EventC
         };
     }
 
+    private static boolean isWarmUpEnabled(Context context) {
+        try {
+            ApplicationInfo info = context.getPackageManager()
+                    .getApplicationInfo(context.getPackageName(), PackageManager.GET_META_DATA);
+            return info.metaData != null && info.metaData.getBoolean(WARM_UP_META_DATA, false);
+        } catch (PackageManager.NameNotFoundException e) {
+            return false;
+        }
+    }
+
     private void stopListening() {
         methodCallHandler.dispose();
         methodCallHandler = null;
@@ -48,13 +48,13 @@ import com.cloudwebrtc.webrtc.utils.EglUtils;
 import com.cloudwebrtc.webrtc.utils.MediaConstraintsUtils;
 import com.cloudwebrtc.webrtc.utils.ObjectType;
 import com.cloudwebrtc.webrtc.utils.PermissionUtils;
+import com.cloudwebrtc.webrtc.video.CameraCapabilities;
+import com.cloudwebrtc.webrtc.video.CaptureFormatSelector;
 
 import org.webrtc.AudioSource;
 import org.webrtc.AudioTrack;
 import org.webrtc.Camera1Capturer;
-import org.webrtc.Camera1Enumerator;
 import org.webrtc.Camera2Capturer;
-import org.webrtc.Camera2Enumerator;
 import org.webrtc.CameraEnumerationAndroid.CaptureFormat;
 import org.webrtc.CameraEnumerator;
 import org.webrtc.CameraVideoCapturer;
@@ -71,9 +71,15 @@ import org.webrtc.audio.JavaAudioDeviceModule;
 import java.io.File;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import io.flutter.plugin.common.MethodChannel.Result;
 
@@ -86,6 +92,11 @@ class GetUserMediaImpl {
     private static final int DEFAULT_WIDTH = 1280;
     private static final int DEFAULT_HEIGHT = 720;
     private static final int DEFAULT_FPS = 30;
+    /**
+     * How long {@link #switchCamera} with stats waits for the new camera's
+     * first frame.
+     */
+    private static final long SWITCH_FIRST_FRAME_TIMEOUT_MS = 5000;
 
     private static final String PERMISSION_AUDIO = Manifest.permission.RECORD_AUDIO;
     private static final String PERMISSION_VIDEO = Manifest.permission.CAMERA;
@@ -100,7 +111,17 @@ class GetUserMediaImpl {
     static final String TAG = FlutterWebRTCPlugin.TAG;
 
     private final Map<String, VideoCapturerInfo> mVideoCapturers = new HashMap<>();
-    private final Map<String, SurfaceTextureHelper> mSurfaceTextureHelpers = new HashMap<>();
+    // The capturers shared by the camera tracks, by camera name. Guarded by
+    // mVideoCapturers.
+    private final Map<String, CameraCaptureSource> mCameraSources = new HashMap<>();
+    private final Map<String, LocalAudioSource> mAudioSources = new HashMap<>();
+    /**
+     * Runs capturer start, change, switch and stop operations one at a time,
+     * in the order they were requested, off the calling thread.
+     */
+    private final ExecutorService captureExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "CaptureLifecycle"));
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private final StateProvider stateProvider;
     private final Context applicationContext;
 
@@ -238,30 +259,31 @@ class GetUserMediaImpl {
     /**
      * Create video capturer via given facing mode
      *
-     * @param enumerator a <tt>CameraEnumerator</tt> provided by webrtc it can be Camera1Enumerator or
-     *                   Camera2Enumerator
-     * @param isFacing   'user' mapped with 'front' is true (default) 'environment' mapped with 'back'
-     *                   is false
-     * @param sourceId   (String) use this sourceId and ignore facing mode if specified.
+     * @param cameras  the cached cameras of the device, with the
+     *                 <tt>CameraEnumerator</tt> to create the capturer with
+     * @param isFacing 'user' mapped with 'front' is true (default) 'environment' mapped with 'back'
+     *                 is false
+     * @param sourceId (String) use this sourceId and ignore facing mode if specified.
      * @return VideoCapturer can invoke with <tt>startCapture</tt>/<tt>stopCapture</tt> <tt>null</tt>
      * if not matched camera with specified facing mode.
      */
     private Map<String, VideoCapturer> createVideoCapturer(
-            CameraEnumerator enumerator, boolean isFacing, String sourceId) {
+            CameraCapabilities cameras, boolean isFacing, String sourceId) {
         VideoCapturer videoCapturer = null;
         Map<String,VideoCapturer> result = new HashMap<String,VideoCapturer>();
+        final CameraEnumerator enumerator = cameras.getEnumerator();
+        final List<CameraCapabilities.CameraInfo> cameraInfos = cameras.getCameras();
         // if sourceId given, use specified sourceId first
-        final String[] deviceNames = enumerator.getDeviceNames();
         if (sourceId != null && !sourceId.equals("")) {
-            for (String name : deviceNames) {
-                if (name.equals(sourceId)) {
-                    videoCapturer = enumerator.createCapturer(name, new CameraEventsHandler());
+            for (CameraCapabilities.CameraInfo camera : cameraInfos) {
+                if (camera.matches(sourceId)) {
+                    videoCapturer = enumerator.createCapturer(camera.name, new CameraEventsHandler());
                     if (videoCapturer != null) {
-                        Log.d(TAG, "create user specified camera " + name + " succeeded");
-                       result.put(name,videoCapturer);
+                        Log.d(TAG, "create user specified camera " + camera.name + " succeeded");
+                       result.put(camera.name,videoCapturer);
                        return result;
                     } else {
-                        Log.d(TAG, "create user specified camera " + name + " failed");
+                        Log.d(TAG, "create user specified camera " + camera.name + " failed");
                         break; // fallback to facing mode
                     }
                 }
@@ -270,25 +292,26 @@ class GetUserMediaImpl {
 
         // otherwise, use facing mode
         String facingStr = isFacing ? "front" : "back";
-        for (String name : deviceNames) {
-            if (enumerator.isFrontFacing(name) == isFacing) {
-                videoCapturer = enumerator.createCapturer(name, new CameraEventsHandler());
+        for (CameraCapabilities.CameraInfo camera : cameraInfos) {
+            if (camera.isFrontFacing() == isFacing) {
+                videoCapturer = enumerator.createCapturer(camera.name, new CameraEventsHandler());
                 if (videoCapturer != null) {
-                    Log.d(TAG, "Create " + facingStr + " camera " + name + " succeeded");
+                    Log.d(TAG, "Create " + facingStr + " camera " + camera.name + " succeeded");
 
-                    result.put(name,videoCapturer);
+                    result.put(camera.name,videoCapturer);
                     return result;
                 } else {
-                    Log.e(TAG, "Create " + facingStr + " camera " + name + " failed");
+                    Log.e(TAG, "Create " + facingStr + " camera " + camera.name + " failed");
                 }
             }
         }
 
         // falling back to the first available camera
-        if (videoCapturer == null && deviceNames.length > 0){
-            videoCapturer = enumerator.createCapturer(deviceNames[0], new CameraEventsHandler());
+        if (videoCapturer == null && !cameraInfos.isEmpty()){
+            String name = cameraInfos.get(0).name;
+            videoCapturer = enumerator.createCapturer(name, new CameraEventsHandler());
             Log.d(TAG, "Falling back to the first available camera");
-            result.put(deviceNames[0],videoCapturer);
+            result.put(name,videoCapturer);
         }
 
         return result;
@@ -359,19 +382,6 @@ class GetUserMediaImpl {
             }
         }
 
-        AudioTrack track =  pcFactory.createAudioTrack(trackId, audioSource);
-        stream.addTrack(track);
-
-        stateProvider.putLocalTrack(track.id(), track);
-
-        ConstraintsMap trackParams = new ConstraintsMap();
-        trackParams.putBoolean("enabled", track.enabled());
-        trackParams.putString("id", track.id());
-        trackParams.putString("kind", "audio");
-        trackParams.putString("label", track.id());
-        trackParams.putString("readyState", track.state().toString());
-        trackParams.putBoolean("remote", false);
-
         if(deviceId == null) {
             deviceId = "" + getPreferredInputDevice(preferredInput);
         }
@@ -384,11 +394,54 @@ class GetUserMediaImpl {
         settings.putBoolean("noiseSuppression", true);
         settings.putInt("channelCount", 1);
         settings.putInt("latency", 0);
-        trackParams.putMap("settings", settings.toMap());
+
+        LocalAudioSource source = new LocalAudioSource();
+        source.source = audioSource;
+        source.settings = settings.toMap();
+        return addAudioTrack(trackId, source, stream);
+    }
+
+    private ConstraintsMap addAudioTrack(String trackId, LocalAudioSource source, @Nullable MediaStream stream) {
+        PeerConnectionFactory pcFactory = stateProvider.getPeerConnectionFactory();
+        AudioTrack track =  pcFactory.createAudioTrack(trackId, source.source);
+        if (stream != null) {
+            stream.addTrack(track);
+        }
+
+        stateProvider.putLocalTrack(track.id(), track);
+        mAudioSources.put(track.id(), source);
+
+        ConstraintsMap trackParams = new ConstraintsMap();
+        trackParams.putBoolean("enabled", track.enabled());
+        trackParams.putString("id", track.id());
+        trackParams.putString("kind", "audio");
+        trackParams.putString("label", track.id());
+        trackParams.putString("readyState", track.state().toString());
+        trackParams.putBoolean("remote", false);
+        trackParams.putMap("settings", source.settings);
 
         return trackParams;
     }
 
+    /**
+     * Creates a new audio track on the source of {@code trackId}.
+     *
+     * @return the new track, or {@code null} if {@code trackId} is not a
+     * local microphone track.
+     */
+    @Nullable
+    ConstraintsMap cloneAudioTrack(String trackId) {
+        LocalAudioSource source = mAudioSources.get(trackId);
+        if (source == null) {
+            return null;
+        }
+        return addAudioTrack(stateProvider.getNextTrackUUID(), source, null);
+    }
+
+    void removeAudioTrack(String trackId) {
+        mAudioSources.remove(trackId);
+    }
+
     /**
      * Implements {@code getUserMedia} without knowledge whether the necessary permissions have
      * already been granted. If the necessary permissions have not been granted yet, they will be
@@ -509,7 +562,7 @@ class GetUserMediaImpl {
 
                         String threadName = Thread.currentThread().getName() + "_texture_screen_thread";
                         SurfaceTextureHelper surfaceTextureHelper =
-                                SurfaceTextureHelper.create(threadName, EglUtils.getRootEglBaseContext());
+                                SurfaceTextureHelper.create(threadName, EglUtils.getEglBaseContext(EglUtils.Subsystem.CAPTURE));
                         videoCapturer.initialize(
                                 surfaceTextureHelper, applicationContext, videoSource.getCapturerObserver());
 
@@ -527,7 +580,9 @@ class GetUserMediaImpl {
                         Log.d(TAG, "OrientationAwareScreenCapturer.startCapture: " + info.width + "x" + info.height + "@" + info.fps);
 
                         String trackId = stateProvider.getNextTrackUUID();
-                        mVideoCapturers.put(trackId, info);
+                        synchronized (mVideoCapturers) {
+                            mVideoCapturers.put(trackId, info);
+                        }
 
                         tracks[0] = pcFactory.createVideoTrack(trackId, videoSource);
 
@@ -640,43 +695,6 @@ class GetUserMediaImpl {
 
     private boolean isFacing = true;
 
-    /**
-     * @return Returns the integer at the key, or the `ideal` property if it is a map.
-     */
-    @Nullable
-    private Integer getConstrainInt(@Nullable ConstraintsMap constraintsMap, String key) {
-        if(constraintsMap == null){
-            return null;
-        }
-
-        if (constraintsMap.getType(key) == ObjectType.Number) {
-            try {
-                return constraintsMap.getInt(key);
-            } catch (Exception e) {
-                // Could be a double instead
-                return (int) Math.round(constraintsMap.getDouble(key));
-            }
-        }
-
-        if (constraintsMap.getType(key) == ObjectType.String) {
-            try {
-                return Integer.parseInt(constraintsMap.getString(key));
-            } catch (Exception e) {
-                // Could be a double instead
-                return (int) Math.round(Double.parseDouble(constraintsMap.getString(key)));
-            }
-        }
-
-        if (constraintsMap.getType(key) == ObjectType.Map) {
-            ConstraintsMap innerMap = constraintsMap.getMap(key);
-            if (constraintsMap.getType("ideal") == ObjectType.Number) {
-                return innerMap.getInt("ideal");
-            }
-        }
-
-        return null;
-    }
-
     private ConstraintsMap getUserVideo(ConstraintsMap constraints, MediaStream mediaStream) {
         ConstraintsMap videoConstraintsMap = null;
         ConstraintsMap videoConstraintsMandatory = null;
@@ -695,74 +713,167 @@ class GetUserMediaImpl {
         //   2. all camera support level should greater than LEGACY
         //   see:
         // https://developer.android.com/reference/android/hardware/camera2/CameraCharacteristics.html#INFO_SUPPORTED_HARDWARE_LEVEL
-        // TODO Enable camera2 enumerator
-        CameraEnumerator cameraEnumerator;
-
-        if (Camera2Enumerator.isSupported(applicationContext)) {
-            Log.d(TAG, "Creating video capturer using Camera2 API.");
-            cameraEnumerator = new Camera2Enumerator(applicationContext);
-        } else {
-            Log.d(TAG, "Creating video capturer using Camera1 API.");
-            cameraEnumerator = new Camera1Enumerator(false);
-        }
+        // CameraCapabilities picks the enumerator and caches the cameras.
+        CameraCapabilities cameras = CameraCapabilities.get(applicationContext);
 
         String facingMode = getFacingMode(videoConstraintsMap);
         isFacing = facingMode == null || !facingMode.equals("environment");
         String deviceId = getSourceIdConstraint(videoConstraintsMap);
 
-        Map<String, VideoCapturer> result = createVideoCapturer(cameraEnumerator, isFacing, deviceId);
+        CameraCaptureSource cameraSource;
+        synchronized (mVideoCapturers) {
+            // Tracks on the same camera share its capturer.
+            cameraSource = findCameraSource(cameras, isFacing, deviceId);
+        }
+        if (cameraSource != null) {
+            Log.d(TAG, "Sharing the capturer of camera " + cameraSource.cameraName);
+        }
+
+        // Creating a capturer and enumerating the formats, which opens the
+        // camera with Camera1, happen outside the lock; it is only taken to
+        // register the capturer and the track.
+        CameraCaptureSource created = null;
+        ConstraintsMap track = null;
+        while (track == null) {
+            if (cameraSource == null) {
+                created = createCameraSource(cameras, isFacing, deviceId);
+                if (created == null) {
+                    return null;
+                }
+                cameraSource = created;
+            }
+            CaptureFormatSelector.Selection format = selectCaptureFormat(
+                    cameras, cameraSource.cameraName, videoConstraintsMap, videoConstraintsMandatory);
+            synchronized (mVideoCapturers) {
+                CameraCaptureSource registered = mCameraSources.get(cameraSource.cameraName);
+                if (registered == null && cameraSource == created) {
+                    mCameraSources.put(created.cameraName, created);
+                    registered = created;
+                    created = null;
+                }
+                if (registered != null) {
+                    CameraCapabilities.CameraInfo camera = cameras.getCamera(registered.cameraName);
+                    track = addCameraTrack(registered, camera != null ? camera.deviceId : registered.cameraName,
+                            facingMode, format, mediaStream);
+                } else {
+                    // The shared capturer was stopped meanwhile.
+                    cameraSource = null;
+                }
+            }
+        }
+        if (created != null) {
+            // Another track opened the camera first. Never started, so this
+            // only disposes of it.
+            created.stop();
+        }
+        return track;
+    }
+
+    private static CaptureFormatSelector.Selection selectCaptureFormat(
+            CameraCapabilities cameras, String cameraName,
+            @Nullable ConstraintsMap videoConstraintsMap, @Nullable ConstraintsMap videoConstraintsMandatory) {
+        CameraCapabilities.CameraInfo camera = cameras.getCamera(cameraName);
+        CaptureFormatSelector.Constraint width = CaptureFormatSelector.Constraint.parse(
+                videoConstraintsMap, "width", videoConstraintsMandatory, "minWidth", "maxWidth");
+        CaptureFormatSelector.Constraint height = CaptureFormatSelector.Constraint.parse(
+                videoConstraintsMap, "height", videoConstraintsMandatory, "minHeight", "maxHeight");
+        CaptureFormatSelector.Constraint frameRate = CaptureFormatSelector.Constraint.parse(
+                videoConstraintsMap, "frameRate", videoConstraintsMandatory, "minFrameRate", "maxFrameRate");
+        CaptureFormatSelector.Selection format = camera == null ? null : CaptureFormatSelector.select(
+                cameras.getSupportedFormats(camera), width, height, frameRate,
+                DEFAULT_WIDTH, DEFAULT_HEIGHT, DEFAULT_FPS);
+        if (format == null) {
+            // No known format satisfies the constraints; let the capturer
+            // pick the closest one as before.
+            Log.w(TAG, "No capture format of camera " + cameraName + " satisfies the constraints");
+            int targetWidth = width.target(DEFAULT_WIDTH);
+            int targetHeight = height.target(DEFAULT_HEIGHT);
+            int targetFps = frameRate.target(DEFAULT_FPS);
+            format = new CaptureFormatSelector.Selection(targetWidth, targetHeight, targetFps,
+                    targetWidth, targetHeight, targetFps);
+        }
+        return format;
+    }
+
+    /**
+     * @return the capturer already open on the camera {@code deviceId}, or
+     * without one, on a camera facing the requested way. Called with
+     * {@link #mVideoCapturers} held.
+     */
+    @Nullable
+    private CameraCaptureSource findCameraSource(CameraCapabilities cameras, boolean isFacing, String deviceId) {
+        for (CameraCaptureSource source : mCameraSources.values()) {
+            CameraCapabilities.CameraInfo camera = cameras.getCamera(source.cameraName);
+            if (camera == null) {
+                continue;
+            }
+            if (deviceId != null && !deviceId.equals("")
+                    ? camera.matches(deviceId) : camera.isFrontFacing() == isFacing) {
+                return source;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates a capturer for a camera, which the caller registers in
+     * {@link #mCameraSources}.
+     */
+    @Nullable
+    private CameraCaptureSource createCameraSource(CameraCapabilities cameras, boolean isFacing, String deviceId) {
+        Map<String, VideoCapturer> result = createVideoCapturer(cameras, isFacing, deviceId);
 
-        if (result == null) {
+        if (result == null || result.isEmpty()) {
             return null;
         }
 
-        if(deviceId == null) {
-            deviceId = result.keySet().iterator().next();
+        // The capturer is keyed by camera name, which the deviceId
+        // constraint may not have been.
+        String cameraName = result.keySet().iterator().next();
+        VideoCapturer videoCapturer = result.get(cameraName);
+        if (videoCapturer == null) {
+            return null;
         }
 
-        VideoCapturer videoCapturer = result.get(deviceId);
+        String threadName = Thread.currentThread().getName() + "_texture_camera_thread";
+        SurfaceTextureHelper surfaceTextureHelper =
+                SurfaceTextureHelper.create(threadName, EglUtils.getEglBaseContext(EglUtils.Subsystem.CAPTURE));
+        CameraCaptureSource source = new CameraCaptureSource(
+                cameraName, videoCapturer, surfaceTextureHelper, captureExecutor);
+        videoCapturer.initialize(surfaceTextureHelper, applicationContext, source);
+        return source;
+    }
 
+    /**
+     * Creates a track with its own {@link VideoSource} on {@code cameraSource}.
+     * Called with {@link #mVideoCapturers} held.
+     */
+    private ConstraintsMap addCameraTrack(CameraCaptureSource cameraSource, String deviceId,
+                                          @Nullable String facingMode, CaptureFormatSelector.Selection format,
+                                          @Nullable MediaStream mediaStream) {
         PeerConnectionFactory pcFactory = stateProvider.getPeerConnectionFactory();
         VideoSource videoSource = pcFactory.createVideoSource(false);
-        String threadName = Thread.currentThread().getName() + "_texture_camera_thread";
-        SurfaceTextureHelper surfaceTextureHelper =
-                SurfaceTextureHelper.create(threadName, EglUtils.getRootEglBaseContext());
-        videoCapturer.initialize(
-                surfaceTextureHelper, applicationContext, videoSource.getCapturerObserver());
 
         VideoCapturerInfo info = new VideoCapturerInfo();
-
-        Integer videoWidth = getConstrainInt(videoConstraintsMap, "width");
-        info.width = videoWidth != null
-                ? videoWidth
-                : videoConstraintsMandatory != null && videoConstraintsMandatory.hasKey("minWidth")
-                        ? videoConstraintsMandatory.getInt("minWidth")
-                        : DEFAULT_WIDTH;
-
-        Integer videoHeight = getConstrainInt(videoConstraintsMap, "height");
-        info.height = videoHeight != null
-                ? videoHeight
-                : videoConstraintsMandatory != null && videoConstraintsMandatory.hasKey("minHeight")
-                        ? videoConstraintsMandatory.getInt("minHeight")
-                        : DEFAULT_HEIGHT;
-
-        Integer videoFrameRate = getConstrainInt(videoConstraintsMap, "frameRate");
-        info.fps = videoFrameRate != null
-                ? videoFrameRate
-                : videoConstraintsMandatory != null && videoConstraintsMandatory.hasKey("minFrameRate")
-                        ? videoConstraintsMandatory.getInt("minFrameRate")
-                        : DEFAULT_FPS;
-        info.capturer = videoCapturer;
-        videoCapturer.startCapture(info.width, info.height, info.fps);
+        info.width = format.captureWidth;
+        info.height = format.captureHeight;
+        info.fps = format.captureFps;
+        info.capturer = cameraSource.capturer;
+        info.cameraSource = cameraSource;
+        info.format = format;
+        info.deviceId = deviceId;
+        info.facingMode = facingMode;
 
         String trackId = stateProvider.getNextTrackUUID();
         mVideoCapturers.put(trackId, info);
-        mSurfaceTextureHelpers.put(trackId, surfaceTextureHelper);
-        Log.d(TAG, "changeCaptureFormat: " + info.width + "x" + info.height + "@" + info.fps);
-        videoSource.adaptOutputFormat(info.width, info.height, info.fps);
+        Log.d(TAG, "changeCaptureFormat: " + info.width + "x" + info.height + "@" + info.fps
+                + ", output " + format.width + "x" + format.height + "@" + format.fps);
+        cameraSource.addTrack(trackId, videoSource, format);
 
         VideoTrack track = pcFactory.createVideoTrack(trackId, videoSource);
-        mediaStream.addTrack(track);
+        if (mediaStream != null) {
+            mediaStream.addTrack(track);
+        }
 
         stateProvider.putLocalTrack(track.id(), track);
 
@@ -775,44 +886,172 @@ class GetUserMediaImpl {
         trackParams.putString("readyState", track.state().toString());
         trackParams.putBoolean("remote", false);
 
+        trackParams.putMap("settings", getCameraTrackSettings(info).toMap());
+
+        return trackParams;
+    }
+
+    private static ConstraintsMap getCameraTrackSettings(VideoCapturerInfo info) {
+        CaptureFormatSelector.Selection format = info.format;
         ConstraintsMap settings = new ConstraintsMap();
-        settings.putString("deviceId", deviceId);
+        settings.putString("deviceId", info.deviceId);
         settings.putString("kind", "videoinput");
-        settings.putInt("width", info.width);
-        settings.putInt("height", info.height);
-        settings.putInt("frameRate", info.fps);
-        if( facingMode!= null) settings.putString("facingMode",facingMode);
-        trackParams.putMap("settings", settings.toMap());
+        settings.putInt("width", format.width);
+        settings.putInt("height", format.height);
+        settings.putInt("frameRate", format.fps);
+        settings.putInt("captureWidth", format.captureWidth);
+        settings.putInt("captureHeight", format.captureHeight);
+        settings.putInt("captureFrameRate", format.captureFps);
+        if( info.facingMode!= null) settings.putString("facingMode",info.facingMode);
+        return settings;
+    }
 
-        return trackParams;
+    /**
+     * Changes the width, height and frame rate of camera track
+     * {@code trackId} in place: the track's source is adapted to the new
+     * output, and the shared capturer's format is changed if needed, so that
+     * an app can shed load without stopping the track. Constraints that are
+     * not given keep their current values.
+     *
+     * Answers with the new settings once the capturer has been changed.
+     */
+    void applyVideoConstraints(String trackId, ConstraintsMap constraints, Result result) {
+        ConstraintsMap settings;
+        synchronized (mVideoCapturers) {
+            VideoCapturerInfo info = mVideoCapturers.get(trackId);
+            if (info == null) {
+                resultError("applyConstraints", "Video capturer not found for id: " + trackId, result);
+                return;
+            }
+            if (info.cameraSource == null) {
+                // Screen capture keeps its format; its settings are unchanged.
+                result.success(null);
+                return;
+            }
+            CameraCaptureSource cameraSource = info.cameraSource;
+            CameraCapabilities cameras = CameraCapabilities.get(applicationContext);
+            CameraCapabilities.CameraInfo camera = cameras.getCamera(cameraSource.cameraName);
+            CaptureFormatSelector.Constraint width = CaptureFormatSelector.Constraint.parse(
+                    constraints, "width", null, null, null);
+            CaptureFormatSelector.Constraint height = CaptureFormatSelector.Constraint.parse(
+                    constraints, "height", null, null, null);
+            CaptureFormatSelector.Constraint frameRate = CaptureFormatSelector.Constraint.parse(
+                    constraints, "frameRate", null, null, null);
+            CaptureFormatSelector.Selection current = info.format;
+            CaptureFormatSelector.Selection format;
+            if (camera != null) {
+                format = CaptureFormatSelector.select(cameras.getSupportedFormats(camera),
+                        width, height, frameRate, current.width, current.height, current.fps);
+                if (format == null) {
+                    resultError("applyConstraints",
+                            "No capture format of camera " + cameraSource.cameraName + " satisfies the constraints",
+                            result);
+                    return;
+                }
+            } else {
+                int targetWidth = width.target(current.width);
+                int targetHeight = height.target(current.height);
+                int targetFps = frameRate.target(current.fps);
+                format = new CaptureFormatSelector.Selection(targetWidth, targetHeight, targetFps,
+                        targetWidth, targetHeight, targetFps);
+            }
+            if (!cameraSource.updateTrack(trackId, format)) {
+                resultError("applyConstraints", "Camera track not found for id: " + trackId, result);
+                return;
+            }
+            info.width = format.captureWidth;
+            info.height = format.captureHeight;
+            info.fps = format.captureFps;
+            info.format = format;
+            Log.d(TAG, "applyConstraints: " + trackId + " output " + format.width + "x" + format.height
+                    + "@" + format.fps + ", capture " + info.width + "x" + info.height + "@" + info.fps);
+            settings = getCameraTrackSettings(info);
+        }
+        // Runs after the capture format update on the serial executor.
+        captureExecutor.execute(() -> result.success(settings.toMap()));
     }
 
-    void removeVideoCapturerSync(String id) {
+    /**
+     * Creates a new track on the camera capturer of {@code trackId}, with the
+     * same output format.
+     *
+     * @return the new track, or {@code null} if {@code trackId} is not a
+     * local camera track.
+     */
+    @Nullable
+    ConstraintsMap cloneVideoTrack(String trackId) {
         synchronized (mVideoCapturers) {
-            VideoCapturerInfo info = mVideoCapturers.get(id);
-            if (info != null) {
-                try {
-                    info.capturer.stopCapture();
-                } catch (InterruptedException e) {
-                    Log.e(TAG, "removeVideoCapturer() Failed to stop video capturer");
-                } finally {
-                    info.capturer.dispose();
-                    mVideoCapturers.remove(id);
-                    SurfaceTextureHelper helper = mSurfaceTextureHelpers.get(id);
-                    if (helper != null)  {
-                        helper.stopListening();
-                        helper.dispose();
-                        mSurfaceTextureHelpers.remove(id);
-                    }
+            VideoCapturerInfo info = mVideoCapturers.get(trackId);
+            if (info == null || info.cameraSource == null) {
+                return null;
+            }
+            return addCameraTrack(info.cameraSource, info.deviceId, info.facingMode, info.format, null);
+        }
+    }
+
+    /**
+     * Shuts down the capture lifecycle executor once the operations already
+     * queued on it, such as stopping the capturers of removed tracks, have
+     * run.
+     */
+    void dispose() {
+        captureExecutor.shutdown();
+    }
+
+    /**
+     * Stops the capturer of track {@code id} on the capture lifecycle
+     * executor, unless other tracks still use it. A camera whose last track
+     * is removed and which is opened again before this runs keeps running
+     * instead of being stopped and restarted.
+     *
+     * @param onRemoved if not {@code null}, run on the executor once the
+     *                  capturer has been stopped, or was left running.
+     */
+    void removeVideoCapturer(String id, @Nullable Runnable onRemoved) {
+        captureExecutor.execute(() -> {
+            try {
+                removeVideoCapturerSync(id);
+            } finally {
+                if (onRemoved != null) {
+                    onRemoved.run();
                 }
             }
+        });
+    }
+
+    @Nullable
+    private VideoCapturerInfo getVideoCapturerInfo(String trackId) {
+        synchronized (mVideoCapturers) {
+            return mVideoCapturers.get(trackId);
         }
     }
 
-    void removeVideoCapturer(String id) {
-        new Thread(() -> {
-            removeVideoCapturerSync(id);
-        }).start();
+    private void removeVideoCapturerSync(String id) {
+        VideoCapturerInfo info;
+        synchronized (mVideoCapturers) {
+            info = mVideoCapturers.remove(id);
+            if (info == null) {
+                return;
+            }
+            if (info.cameraSource != null) {
+                if (!info.cameraSource.removeTrack(id)) {
+                    // Other tracks still use the camera.
+                    return;
+                }
+                mCameraSources.values().remove(info.cameraSource);
+            }
+        }
+        if (info.cameraSource != null) {
+            info.cameraSource.stop();
+            return;
+        }
+        try {
+            info.capturer.stopCapture();
+        } catch (InterruptedException e) {
+            Log.e(TAG, "removeVideoCapturer() Failed to stop video capturer");
+        } finally {
+            info.capturer.dispose();
+        }
     }
 
     @RequiresApi(api = VERSION_CODES.M)
@@ -857,44 +1096,216 @@ class GetUserMediaImpl {
                 permissions.toArray(new String[permissions.size()]), callback);
     }
 
-    void switchCamera(String id, Result result) {
-        VideoCapturer videoCapturer = mVideoCapturers.get(id).capturer;
-        if (videoCapturer == null) {
+    /**
+     * Switches the capturer of track {@code id}, and every track sharing it,
+     * to the camera prepared by {@link #setCameraHotStandby}, or else to the
+     * first camera facing the other way. The switch is refused if another
+     * capturer already has the camera open.
+     *
+     * @param stats whether to answer, once the first frame of the new camera
+     *              has arrived, with the measured latencies rather than with
+     *              whether the new camera faces front. Without a frame within
+     *              {@link #SWITCH_FIRST_FRAME_TIMEOUT_MS}, the switch fails.
+     */
+    void switchCamera(String id, boolean stats, Result result) {
+        VideoCapturerInfo info = getVideoCapturerInfo(id);
+        if (info == null || !(info.capturer instanceof CameraVideoCapturer)) {
             resultError("switchCamera", "Video capturer not found for id: " + id, result);
             return;
         }
-
-        CameraEnumerator cameraEnumerator;
-
-        if (Camera2Enumerator.isSupported(applicationContext)) {
-            Log.d(TAG, "Creating video capturer using Camera2 API.");
-            cameraEnumerator = new Camera2Enumerator(applicationContext);
-        } else {
-            Log.d(TAG, "Creating video capturer using Camera1 API.");
-            cameraEnumerator = new Camera1Enumerator(false);
+        CameraVideoCapturer cameraVideoCapturer = (CameraVideoCapturer) info.capturer;
+        CameraCaptureSource source = info.cameraSource;
+        CameraCapabilities cameras = CameraCapabilities.get(applicationContext);
+
+        CameraCapabilities.CameraInfo target = null;
+        String standbyCamera = source != null ? source.getStandbyCamera() : null;
+        if (standbyCamera != null) {
+            target = cameras.getCamera(standbyCamera);
         }
-        // if sourceId given, use specified sourceId first
-        final String[] deviceNames = cameraEnumerator.getDeviceNames();
-        for (String name : deviceNames) {
-            if (cameraEnumerator.isFrontFacing(name) == !isFacing) {
-                CameraVideoCapturer cameraVideoCapturer = (CameraVideoCapturer) videoCapturer;
-                cameraVideoCapturer.switchCamera(
-                        new CameraVideoCapturer.CameraSwitchHandler() {
-                            @Override
-                            public void onCameraSwitchDone(boolean b) {
-                                isFacing = !isFacing;
+        if (target == null) {
+            for (CameraCapabilities.CameraInfo camera : cameras.getCameras()) {
+                if (camera.isFrontFacing() == !isFacing) {
+                    target = camera;
+                    break;
+                }
+            }
+        }
+        if (target == null) {
+            resultError("switchCamera", "Switching camera failed: " + id, result);
+            return;
+        }
+
+        final CameraCapabilities.CameraInfo camera = target;
+        final long startTimeNs = System.nanoTime();
+        captureExecutor.execute(() -> {
+            final String previousCameraName;
+            synchronized (mVideoCapturers) {
+                if (!mVideoCapturers.containsKey(id)) {
+                    // Removed while the switch was queued.
+                    resultError("switchCamera", "Video capturer not found for id: " + id, result);
+                    return;
+                }
+                if (source != null) {
+                    CameraCaptureSource other = mCameraSources.get(camera.name);
+                    if (other != null && other != source) {
+                        resultError("switchCamera", "Camera " + camera.name + " is in use by another track", result);
+                        return;
+                    }
+                    // Claim the camera now, so that getUserMedia shares this
+                    // capturer rather than opening it again meanwhile.
+                    previousCameraName = source.cameraName;
+                    mCameraSources.values().remove(source);
+                    source.cameraName = camera.name;
+                    mCameraSources.put(camera.name, source);
+                } else {
+                    previousCameraName = null;
+                }
+            }
+            cameraVideoCapturer.switchCamera(
+                    new CameraVideoCapturer.CameraSwitchHandler() {
+                        @Override
+                        public void onCameraSwitchDone(boolean b) {
+                            final long switchTimeNs = System.nanoTime() - startTimeNs;
+                            isFacing = b;
+                            if (source == null) {
+                                result.success(b);
+                                return;
+                            }
+                            final boolean hotStandby = applyStandbyFormats(source, camera);
+                            final AtomicBoolean answered = new AtomicBoolean();
+                            source.runOnNextFrame(() -> {
+                                long firstFrameTimeNs = System.nanoTime() - startTimeNs;
+                                Log.d(TAG, "switchCamera to " + camera.name
+                                        + (hotStandby ? " (hot standby)" : "")
+                                        + " took " + switchTimeNs / 1000000 + " ms, first frame after "
+                                        + firstFrameTimeNs / 1000000 + " ms");
+                                if (stats && answered.compareAndSet(false, true)) {
+                                    ConstraintsMap params = new ConstraintsMap(4);
+                                    params.putBoolean("frontFacing", b);
+                                    params.putBoolean("hotStandby", hotStandby);
+                                    params.putDouble("switchTimeMs", switchTimeNs / 1e6);
+                                    params.putDouble("firstFrameTimeMs", firstFrameTimeNs / 1e6);
+                                    result.success(params.toMap());
+                                }
+                            });
+                            if (stats) {
+                                // A camera that fails after opening sends no frame.
+                                mainHandler.postDelayed(() -> {
+                                    if (answered.compareAndSet(false, true)) {
+                                        resultError("switchCamera", "No frame from camera " + camera.name
+                                                + " within " + SWITCH_FIRST_FRAME_TIMEOUT_MS + " ms", result);
+                                    }
+                                }, SWITCH_FIRST_FRAME_TIMEOUT_MS);
+                            } else {
                                 result.success(b);
                             }
+                            if (source.isHotStandby()) {
+                                // Prepare the camera just switched away from.
+                                captureExecutor.execute(() -> prepareStandbyCamera(source));
+                            }
+                        }
 
-                            @Override
-                            public void onCameraSwitchError(String s) {
-                                resultError("switchCamera", "Switching camera failed: " + id, result);
+                        @Override
+                        public void onCameraSwitchError(String s) {
+                            if (source != null) {
+                                synchronized (mVideoCapturers) {
+                                    if (mCameraSources.get(camera.name) == source
+                                            && !mCameraSources.containsKey(previousCameraName)) {
+                                        mCameraSources.remove(camera.name);
+                                        source.cameraName = previousCameraName;
+                                        mCameraSources.put(previousCameraName, source);
+                                    }
+                                }
                             }
-                        }, name);
-                return;
+                            resultError("switchCamera", "Switching camera failed: " + id, result);
+                        }
+                    }, camera.name);
+        });
+    }
+
+    /**
+     * Moves the tracks of {@code source} to the formats prepared for
+     * {@code camera} by hot standby, changing the capture format only if the
+     * new camera needs a different one.
+     *
+     * @return whether formats had been prepared for {@code camera}.
+     */
+    private boolean applyStandbyFormats(CameraCaptureSource source, CameraCapabilities.CameraInfo camera) {
+        Map<String, CaptureFormatSelector.Selection> formats = source.takeStandbyFormats(camera.name);
+        synchronized (mVideoCapturers) {
+            for (Map.Entry<String, VideoCapturerInfo> item : mVideoCapturers.entrySet()) {
+                VideoCapturerInfo info = item.getValue();
+                if (info.cameraSource != source) {
+                    continue;
+                }
+                info.deviceId = camera.deviceId;
+                CaptureFormatSelector.Selection format = formats != null ? formats.get(item.getKey()) : null;
+                if (format != null && source.updateTrack(item.getKey(), format)) {
+                    info.width = format.captureWidth;
+                    info.height = format.captureHeight;
+                    info.fps = format.captureFps;
+                    info.format = format;
+                }
             }
         }
-        resultError("switchCamera", "Switching camera failed: " + id, result);
+        return formats != null;
+    }
+
+    /**
+     * With hot standby, the camera the next {@link #switchCamera} of track
+     * {@code trackId} goes to is chosen ahead of time, its capture formats are
+     * read, and the format each track will use on it is selected, so the
+     * switch only has to open the camera. This is repeated after every switch.
+     */
+    void setCameraHotStandby(String trackId, boolean enabled, Result result) {
+        VideoCapturerInfo info = getVideoCapturerInfo(trackId);
+        if (info == null || info.cameraSource == null) {
+            resultError("setCameraHotStandby", "Camera track not found for id: " + trackId, result);
+            return;
+        }
+        CameraCaptureSource source = info.cameraSource;
+        source.setHotStandby(enabled);
+        if (!enabled) {
+            result.success(null);
+            return;
+        }
+        captureExecutor.execute(() -> {
+            prepareStandbyCamera(source);
+            result.success(null);
+        });
+    }
+
+    /**
+     * Called on the capture lifecycle executor.
+     */
+    private void prepareStandbyCamera(CameraCaptureSource source) {
+        CameraCapabilities cameras = CameraCapabilities.get(applicationContext);
+        CameraCapabilities.CameraInfo current = cameras.getCamera(source.cameraName);
+        boolean currentFacing = current != null ? current.isFrontFacing() : isFacing;
+        CameraCapabilities.CameraInfo standby = null;
+        for (CameraCapabilities.CameraInfo camera : cameras.getCameras()) {
+            if (camera.isFrontFacing() != currentFacing) {
+                standby = camera;
+                break;
+            }
+        }
+        if (standby == null) {
+            source.setStandbyCamera(null, Collections.<String, CaptureFormatSelector.Selection>emptyMap());
+            return;
+        }
+        // Each track keeps its output size and frame rate on the other camera.
+        List<CaptureFormat> supported = cameras.getSupportedFormats(standby);
+        Map<String, CaptureFormatSelector.Selection> formats = new HashMap<>();
+        for (Map.Entry<String, CaptureFormatSelector.Selection> item : source.getFormats().entrySet()) {
+            CaptureFormatSelector.Selection format = item.getValue();
+            CaptureFormatSelector.Selection selected = CaptureFormatSelector.select(supported,
+                    new CaptureFormatSelector.Constraint(), new CaptureFormatSelector.Constraint(),
+                    new CaptureFormatSelector.Constraint(), format.width, format.height, format.fps);
+            if (selected != null) {
+                formats.put(item.getKey(), selected);
+            }
+        }
+        source.setStandbyCamera(standby.name, formats);
     }
 
     /**
@@ -941,7 +1352,7 @@ class GetUserMediaImpl {
     }
 
     void hasTorch(String trackId, Result result) {
-        VideoCapturerInfo info = mVideoCapturers.get(trackId);
+        VideoCapturerInfo info = getVideoCapturerInfo(trackId);
         if (info == null) {
             resultError("hasTorch", "Video capturer not found for id: " + trackId, result);
             return;
@@ -1007,7 +1418,7 @@ class GetUserMediaImpl {
 
     @RequiresApi(api = VERSION_CODES.LOLLIPOP)
     void setTorch(String trackId, boolean torch, Result result) {
-        VideoCapturerInfo info = mVideoCapturers.get(trackId);
+        VideoCapturerInfo info = getVideoCapturerInfo(trackId);
         if (info == null) {
             resultError("setTorch", "Video capturer not found for id: " + trackId, result);
             return;
@@ -1122,13 +1533,23 @@ class GetUserMediaImpl {
     }
 
     public void reStartCamera(IsCameraEnabled getCameraId) {
-        for (Map.Entry<String, VideoCapturerInfo> item : mVideoCapturers.entrySet()) {
-            if (!item.getValue().isScreenCapture && getCameraId.isEnabled(item.getKey())) {
-                item.getValue().capturer.startCapture(
-                        item.getValue().width,
-                        item.getValue().height,
-                        item.getValue().fps
-                );
+        Map<String, VideoCapturerInfo> capturers;
+        synchronized (mVideoCapturers) {
+            capturers = new HashMap<>(mVideoCapturers);
+        }
+        Set<CameraCaptureSource> restarted = new HashSet<>();
+        for (Map.Entry<String, VideoCapturerInfo> item : capturers.entrySet()) {
+            VideoCapturerInfo info = item.getValue();
+            if (info.isScreenCapture || !getCameraId.isEnabled(item.getKey())) {
+                continue;
+            }
+            if (info.cameraSource != null) {
+                // Once per shared capturer.
+                if (restarted.add(info.cameraSource)) {
+                    info.cameraSource.restart();
+                }
+            } else {
+                info.capturer.startCapture(info.width, info.height, info.fps);
             }
         }
     }
@@ -1143,6 +1564,18 @@ class GetUserMediaImpl {
         int height;
         int fps;
         boolean isScreenCapture = false;
+        /**
+         * The shared capturer of a camera track.
+         */
+        CameraCaptureSource cameraSource;
+        CaptureFormatSelector.Selection format;
+        String deviceId;
+        String facingMode;
+    }
+
+    private static class LocalAudioSource {
+        AudioSource source;
+        Map<String, Object> settings;
     }
 
     @RequiresApi(api = VERSION_CODES.M)
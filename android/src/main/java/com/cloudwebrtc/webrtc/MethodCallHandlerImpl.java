@@ -6,11 +6,12 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.graphics.SurfaceTexture;
-import android.hardware.Camera;
-import android.hardware.Camera.CameraInfo;
 import android.media.AudioDeviceInfo;
 import android.media.AudioManager;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.util.LongSparseArray;
 
@@ -29,6 +30,11 @@ import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
 import com.cloudwebrtc.webrtc.utils.EglUtils;
 import com.cloudwebrtc.webrtc.utils.ObjectType;
 import com.cloudwebrtc.webrtc.utils.PermissionUtils;
+import com.cloudwebrtc.webrtc.video.BudgetedVideoDecoderFactory;
+import com.cloudwebrtc.webrtc.video.CameraCapabilities;
+import com.cloudwebrtc.webrtc.video.MediaCodecCapabilities;
+import com.cloudwebrtc.webrtc.video.VideoDecoderBudget;
+import com.cloudwebrtc.webrtc.video.VideoEncoderPolicy;
 
 import com.twilio.audioswitch.AudioDevice;
 
@@ -37,7 +43,6 @@ import org.webrtc.CryptoOptions;
 import org.webrtc.DtmfSender;
 import org.webrtc.EglBase;
 import org.webrtc.IceCandidate;
-import org.webrtc.Logging;
 import org.webrtc.MediaConstraints;
 import org.webrtc.MediaConstraints.KeyValuePair;
 import org.webrtc.MediaStream;
@@ -65,7 +70,6 @@ import org.webrtc.SessionDescription.Type;
 import org.webrtc.SoftwareVideoDecoderFactory;
 import org.webrtc.SoftwareVideoEncoderFactory;
 import org.webrtc.VideoTrack;
-import org.webrtc.WrappedVideoDecoderFactory;
 import org.webrtc.audio.AudioDeviceModule;
 import org.webrtc.audio.JavaAudioDeviceModule;
 
@@ -73,6 +77,7 @@ import java.io.File;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -99,6 +104,13 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
   private final Map<String, MediaStream> localStreams = new HashMap<>();
   private final Map<String, MediaStreamTrack> localTracks = new HashMap<>();
   private final LongSparseArray<FlutterRTCVideoRenderer> renders = new LongSparseArray<>();
+  private final LongSparseArray<FlutterRTCVideoCompositor> compositors = new LongSparseArray<>();
+  /**
+   * Disposed renderers kept for reuse, up to {@link #maxIdleRenderers}, set
+   * with the {@code videoRendererPoolSize} initialize option.
+   */
+  private final ArrayDeque<FlutterRTCVideoRenderer> idleRenders = new ArrayDeque<>();
+  private int maxIdleRenderers = 0;
 
   /**
    * The implementation of {@code getUserMedia} extracted into a separate file in order to reduce
@@ -110,6 +122,28 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
 
   private FlutterRTCFrameCryptor frameCryptor;
 
+  /**
+   * Render threads shared by all video renderers, if enabled with the
+   * {@code sharedRenderThreads} initialize option.
+   */
+  private TextureRenderThreadPool renderThreadPool;
+
+  /**
+   * {@code initialize} calls waiting for {@link #warmUp} to finish, or
+   * {@code null} if no warm-up is running. Main thread only.
+   */
+  private List<PendingCall> pendingInitializations;
+
+  private static final class PendingCall {
+    final MethodCall call;
+    final Result result;
+
+    PendingCall(MethodCall call, Result result) {
+      this.call = call;
+      this.result = result;
+    }
+  }
+
   private Activity activity;
 
   MethodCallHandlerImpl(Context context, BinaryMessenger messenger, TextureRegistry textureRegistry) {
@@ -125,44 +159,149 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
   }
 
   void dispose() {
+    // A running warm-up releases what it created.
+    if (pendingInitializations != null) {
+      for (PendingCall pending : pendingInitializations) {
+        resultError(pending.call.method, "Disposed before the warm-up finished", pending.result);
+      }
+      pendingInitializations = null;
+    }
+    if (mFactory == null && audioDeviceModule != null) {
+      // Warmed up but never initialized.
+      audioDeviceModule.release();
+      audioDeviceModule = null;
+    }
     for (final MediaStream mediaStream : localStreams.values()) {
-      streamDispose(mediaStream);
+      streamDispose(mediaStream, null);
       mediaStream.dispose();
     }
     localStreams.clear();
     for (final MediaStreamTrack track : localTracks.values()) {
+      if (getUserMediaImpl != null && track.kind().equals("video")) {
+        // Clones, which are in no stream.
+        getUserMediaImpl.removeVideoCapturer(track.id(), null);
+      }
       track.dispose();
     }
     localTracks.clear();
+    if (getUserMediaImpl != null) {
+      // The capturers are stopped before its executor ends.
+      getUserMediaImpl.dispose();
+      getUserMediaImpl = null;
+    }
     for (final PeerConnectionObserver connection : mPeerConnectionObservers.values()) {
       peerConnectionDispose(connection);
     }
     mPeerConnectionObservers.clear();
+    for (int i = 0; i < renders.size(); i++) {
+      renders.valueAt(i).Dispose();
+    }
+    renders.clear();
+    for (FlutterRTCVideoRenderer render : idleRenders) {
+      render.Dispose();
+    }
+    idleRenders.clear();
+    for (int i = 0; i < compositors.size(); i++) {
+      compositors.valueAt(i).Dispose();
+    }
+    compositors.clear();
+    if (renderThreadPool != null) {
+      renderThreadPool.dispose();
+      renderThreadPool = null;
+    }
   }
 
-  private void initialize(int networkIgnoreMask, boolean forceSWCodec) {
-    if (mFactory != null) {
+  /**
+   * Starts the expensive parts of {@link #initialize} which do not depend on
+   * its options on a background thread: loading the native library, creating
+   * the root EGL context and the audio device module, scanning
+   * {@code MediaCodecList} for the hardware codecs, which Android caches for
+   * the codec factories {@code initialize} creates once its options are
+   * applied, and enumerating the cameras. {@code initialize} calls made in
+   * the meantime are answered once the warm-up has finished, so awaiting
+   * {@code WebRTC.initialize()} on the Dart side awaits readiness.
+   */
+  void warmUp() {
+    if (mFactory != null || pendingInitializations != null) {
       return;
     }
+    pendingInitializations = new ArrayList<>();
+    // Cheap to create; only the audio device module it feeds is created in
+    // the background.
+    final GetUserMediaImpl warmGetUserMediaImpl = new GetUserMediaImpl(this, context);
+    final Handler mainHandler = new Handler(Looper.getMainLooper());
+    new Thread(() -> {
+      final long startTimeMs = SystemClock.elapsedRealtime();
+      AudioDeviceModule warmAudioDeviceModule = null;
+      try {
+        initializePeerConnectionFactory();
+        warmAudioDeviceModule = createAudioDeviceModule(warmGetUserMediaImpl);
+        EglUtils.getRootEglBase();
+        MediaCodecCapabilities.get();
+        CameraCapabilities.get(context).getCameras();
+      } catch (RuntimeException e) {
+        Log.e(TAG, "warmUp failed, initializing on demand", e);
+      }
+      Log.d(TAG, "warmUp took " + (SystemClock.elapsedRealtime() - startTimeMs) + " ms");
+
+      final AudioDeviceModule adm = warmAudioDeviceModule;
+      mainHandler.post(() -> {
+        List<PendingCall> pending = pendingInitializations;
+        if (pending == null) {
+          // Disposed meanwhile.
+          if (adm != null) {
+            adm.release();
+          }
+          warmGetUserMediaImpl.dispose();
+          return;
+        }
+        pendingInitializations = null;
+        if (adm != null) {
+          getUserMediaImpl = warmGetUserMediaImpl;
+          audioDeviceModule = adm;
+          getUserMediaImpl.audioDeviceModule = (JavaAudioDeviceModule) adm;
+        } else {
+          warmGetUserMediaImpl.dispose();
+        }
+        for (PendingCall initialization : pending) {
+          onMethodCall(initialization.call, initialization.result);
+        }
+      });
+    }, "WebRTCWarmUp").start();
+  }
 
+  private void initializePeerConnectionFactory() {
     PeerConnectionFactory.initialize(
             InitializationOptions.builder(context)
                     .setEnableInternalTracer(true)
                     .createInitializationOptions());
+  }
 
-
-
-    getUserMediaImpl = new GetUserMediaImpl(this, context);
-
-    frameCryptor = new FlutterRTCFrameCryptor(this);
-
-    audioDeviceModule = JavaAudioDeviceModule.builder(context)
+  private AudioDeviceModule createAudioDeviceModule(GetUserMediaImpl getUserMediaImpl) {
+    return JavaAudioDeviceModule.builder(context)
             .setUseHardwareAcousticEchoCanceler(true)
             .setUseHardwareNoiseSuppressor(true)
             .setSamplesReadyCallback(getUserMediaImpl.inputSamplesInterceptor)
             .createAudioDeviceModule();
+  }
+
+  private void initialize(int networkIgnoreMask, boolean forceSWCodec) {
+    if (mFactory != null) {
+      return;
+    }
+
+    if (audioDeviceModule == null) {
+      // Not warmed up.
+      initializePeerConnectionFactory();
+
+      getUserMediaImpl = new GetUserMediaImpl(this, context);
+
+      audioDeviceModule = createAudioDeviceModule(getUserMediaImpl);
+
+      getUserMediaImpl.audioDeviceModule = (JavaAudioDeviceModule) audioDeviceModule;
+    }
 
-    getUserMediaImpl.audioDeviceModule = (JavaAudioDeviceModule) audioDeviceModule;
+    frameCryptor = new FlutterRTCFrameCryptor(this);
 
     final Options options = new Options();
     options.networkIgnoreMask = networkIgnoreMask;
@@ -176,11 +315,11 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
               .setVideoDecoderFactory(new SoftwareVideoDecoderFactory());
     } else {
       // Initialize EGL contexts required for HW acceleration.
-      EglBase.Context eglContext = EglUtils.getRootEglBaseContext();
-
       factoryBuilder
-              .setVideoEncoderFactory(new SimulcastVideoEncoderFactoryWrapper(eglContext, true, true))
-              .setVideoDecoderFactory(new WrappedVideoDecoderFactory(eglContext));
+              .setVideoEncoderFactory(new SimulcastVideoEncoderFactoryWrapper(
+                      EglUtils.getEglBaseContext(EglUtils.Subsystem.ENCODE), true, true))
+              .setVideoDecoderFactory(new BudgetedVideoDecoderFactory(
+                      EglUtils.getEglBaseContext(EglUtils.Subsystem.DECODE)));
     }
     mFactory = factoryBuilder
             .setAudioDeviceModule(audioDeviceModule)
@@ -194,6 +333,10 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     final AnyThreadResult result = new AnyThreadResult(notSafeResult);
     switch (call.method) {
       case "initialize": {
+        if (pendingInitializations != null) {
+          pendingInitializations.add(new PendingCall(call, notSafeResult));
+          return;
+        }
         int networkIgnoreMask = Options.ADAPTER_TYPE_UNKNOWN;
         Map<String, Object> options = call.argument("options");
         ConstraintsMap constraintsMap = new ConstraintsMap(options);
@@ -232,7 +375,35 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
           final boolean v = constraintsMap.getBoolean("forceSWCodec");
           forceSWCodec = v;
         }
+        if (constraintsMap.hasKey("encoderPolicy")
+                && constraintsMap.getType("encoderPolicy") == ObjectType.Map) {
+          VideoEncoderPolicy.instance.configure(constraintsMap.getMap("encoderPolicy"));
+        }
+        if (constraintsMap.hasKey("decoderBudget")
+                && constraintsMap.getType("decoderBudget") == ObjectType.Map) {
+          VideoDecoderBudget.instance.configure(constraintsMap.getMap("decoderBudget"));
+        }
         initialize(networkIgnoreMask,forceSWCodec);
+        if (constraintsMap.hasKey("videoRendererPoolSize")
+                && constraintsMap.getType("videoRendererPoolSize") == ObjectType.Number) {
+          maxIdleRenderers = Math.max(0, constraintsMap.getInt("videoRendererPoolSize"));
+        }
+        if (constraintsMap.hasKey("sharedRenderThreads")
+                && constraintsMap.getType("sharedRenderThreads") == ObjectType.Boolean
+                && constraintsMap.getBoolean("sharedRenderThreads")
+                && renderThreadPool == null) {
+          EglBase.Context eglContext = EglUtils.getEglBaseContext(EglUtils.Subsystem.RENDER);
+          if (TextureRenderThreadPool.isSupported(eglContext)) {
+            int size = TextureRenderThreadPool.defaultSize();
+            if (constraintsMap.hasKey("renderThreadPoolSize")
+                    && constraintsMap.getType("renderThreadPoolSize") == ObjectType.Number) {
+              size = constraintsMap.getInt("renderThreadPoolSize");
+            }
+            renderThreadPool = new TextureRenderThreadPool(eglContext, size);
+          } else {
+            Log.w(TAG, "sharedRenderThreads requires an EGL14 context, using a thread per renderer");
+          }
+        }
         result.success(null);
         break;
       }
@@ -388,6 +559,64 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
         result.success(null);
         break;
       }
+      case "dataChannelSetBufferedAmountLowThreshold": {
+        String peerConnectionId = call.argument("peerConnectionId");
+        String dataChannelId = call.argument("dataChannelId");
+        Number threshold = call.argument("threshold");
+        Boolean bufferedAmountChangeEvents = call.argument("bufferedAmountChangeEvents");
+        dataChannelSetBufferedAmountLowThreshold(peerConnectionId, dataChannelId,
+                threshold == null ? 0 : threshold.longValue(),
+                bufferedAmountChangeEvents == null || bufferedAmountChangeEvents, result);
+        break;
+      }
+      case "dataChannelSetSendQueue": {
+        String peerConnectionId = call.argument("peerConnectionId");
+        String dataChannelId = call.argument("dataChannelId");
+        Number maxBufferedAmount = call.argument("maxBufferedAmount");
+        dataChannelSetSendQueue(peerConnectionId, dataChannelId,
+                maxBufferedAmount == null ? 0 : maxBufferedAmount.longValue(), result);
+        break;
+      }
+      case "dataChannelSendFile": {
+        String peerConnectionId = call.argument("peerConnectionId");
+        String dataChannelId = call.argument("dataChannelId");
+        String path = call.argument("path");
+        Integer chunkSize = call.argument("chunkSize");
+        Number maxBufferedAmount = call.argument("maxBufferedAmount");
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+        if (pco == null || pco.getPeerConnection() == null) {
+          resultError("dataChannelSendFile", "peerConnection is null", result);
+        } else {
+          pco.dataChannelSendFile(dataChannelId, path, chunkSize == null ? 0 : chunkSize,
+                  maxBufferedAmount == null ? 0 : maxBufferedAmount.longValue(), result);
+        }
+        break;
+      }
+      case "dataChannelReceiveFile": {
+        String peerConnectionId = call.argument("peerConnectionId");
+        String dataChannelId = call.argument("dataChannelId");
+        String path = call.argument("path");
+        Number expectedBytes = call.argument("size");
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+        if (pco == null || pco.getPeerConnection() == null) {
+          resultError("dataChannelReceiveFile", "peerConnection is null", result);
+        } else {
+          pco.dataChannelReceiveFile(dataChannelId, path,
+                  expectedBytes == null ? 0 : expectedBytes.longValue(), result);
+        }
+        break;
+      }
+      case "dataChannelStopReceiveFile": {
+        String peerConnectionId = call.argument("peerConnectionId");
+        String dataChannelId = call.argument("dataChannelId");
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+        if (pco == null || pco.getPeerConnection() == null) {
+          resultError("dataChannelStopReceiveFile", "peerConnection is null", result);
+        } else {
+          pco.dataChannelStopReceiveFile(dataChannelId, result);
+        }
+        break;
+      }
       case "dataChannelClose": {
         String peerConnectionId = call.argument("peerConnectionId");
         String dataChannelId = call.argument("dataChannelId");
@@ -397,8 +626,7 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
       }
       case "streamDispose": {
         String streamId = call.argument("streamId");
-        streamDispose(streamId);
-        result.success(null);
+        streamDispose(streamId, () -> result.success(null));
         break;
       }
       case "mediaStreamTrackSetEnable": {
@@ -430,8 +658,7 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
       }
       case "trackDispose": {
         String trackId = call.argument("trackId");
-        trackDispose(trackId);
-        result.success(null);
+        trackDispose(trackId, () -> result.success(null));
         break;
       }
       case "restartIce": {
@@ -453,9 +680,19 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
         break;
       }
       case "createVideoRenderer": {
+        FlutterRTCVideoRenderer idleRender = idleRenders.poll();
+        if (idleRender != null) {
+          // The event channel of a recycled renderer is still registered.
+          renders.put(idleRender.getId(), idleRender);
+          ConstraintsMap params = new ConstraintsMap();
+          params.putInt("textureId", idleRender.getId());
+          result.success(params.toMap());
+          break;
+        }
         SurfaceTextureEntry entry = textures.createSurfaceTexture();
         SurfaceTexture surfaceTexture = entry.surfaceTexture();
-        FlutterRTCVideoRenderer render = new FlutterRTCVideoRenderer(surfaceTexture, entry);
+        FlutterRTCVideoRenderer render =
+                new FlutterRTCVideoRenderer(surfaceTexture, entry, renderThreadPool);
         renders.put(entry.id(), render);
 
         EventChannel eventChannel =
@@ -479,8 +716,13 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
           resultError("videoRendererDispose", "render [" + textureId + "] not found !", result);
           return;
         }
-        render.Dispose();
         renders.delete(textureId);
+        if (idleRenders.size() < maxIdleRenderers) {
+          render.recycle();
+          idleRenders.add(render);
+        } else {
+          render.Dispose();
+        }
         result.success(null);
         break;
       }
@@ -508,6 +750,119 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
         result.success(null);
         break;
       }
+      case "videoRendererSetRenderPolicy": {
+        int textureId = call.argument("textureId");
+        String policy = call.argument("policy");
+        Number fps = call.argument("fps");
+        FlutterRTCVideoRenderer render = renders.get(textureId);
+        if (render == null) {
+          resultError("videoRendererSetRenderPolicy", "render [" + textureId + "] not found !", result);
+          return;
+        }
+        if (policy == null || !render.setRenderPolicy(policy, fps == null ? 0 : fps.floatValue())) {
+          resultError("videoRendererSetRenderPolicy", "unknown policy: " + policy, result);
+          return;
+        }
+        result.success(null);
+        break;
+      }
+      case "getVideoEncoderAllocation": {
+        result.success(VideoEncoderPolicy.instance.getStats());
+        break;
+      }
+      case "getVideoDecoderAllocation": {
+        result.success(VideoDecoderBudget.instance.getStats());
+        break;
+      }
+      case "getEglContextStats": {
+        result.success(EglUtils.getContextStats());
+        break;
+      }
+      case "videoRendererGetStats": {
+        int textureId = call.argument("textureId");
+        FlutterRTCVideoRenderer render = renders.get(textureId);
+        if (render == null) {
+          resultError("videoRendererGetStats", "render [" + textureId + "] not found !", result);
+          return;
+        }
+        result.success(render.getStats());
+        break;
+      }
+      case "videoRendererSetViewSize": {
+        int textureId = call.argument("textureId");
+        Number width = call.argument("width");
+        Number height = call.argument("height");
+        FlutterRTCVideoRenderer render = renders.get(textureId);
+        if (render == null) {
+          resultError("videoRendererSetViewSize", "render [" + textureId + "] not found !", result);
+          return;
+        }
+        render.setViewSize(width == null ? 0 : width.intValue(), height == null ? 0 : height.intValue());
+        result.success(null);
+        break;
+      }
+      case "createVideoCompositor": {
+        EglBase.Context sharedContext = EglUtils.getEglBaseContext(EglUtils.Subsystem.RENDER);
+        if (sharedContext == null) {
+          resultError("createVideoCompositor", "EGL context not initialized", result);
+          return;
+        }
+        SurfaceTextureEntry entry = textures.createSurfaceTexture();
+        FlutterRTCVideoCompositor compositor =
+                new FlutterRTCVideoCompositor(entry.surfaceTexture(), entry, sharedContext);
+        compositors.put(entry.id(), compositor);
+
+        ConstraintsMap params = new ConstraintsMap();
+        params.putInt("textureId", (int) entry.id());
+        result.success(params.toMap());
+        break;
+      }
+      case "videoCompositorSetLayout": {
+        int textureId = call.argument("textureId");
+        FlutterRTCVideoCompositor compositor = compositors.get(textureId);
+        if (compositor == null) {
+          resultError("videoCompositorSetLayout", "compositor [" + textureId + "] not found !", result);
+          return;
+        }
+        Number width = call.argument("width");
+        Number height = call.argument("height");
+        Number maxFps = call.argument("maxFps");
+        List<Map<String, Object>> tiles = call.argument("tiles");
+        List<FlutterRTCVideoCompositor.TileLayout> layouts = new ArrayList<>();
+        if (tiles != null) {
+          for (Map<String, Object> tile : tiles) {
+            String trackId = (String) tile.get("trackId");
+            MediaStreamTrack track = getTrackForId(trackId, null);
+            if (!(track instanceof VideoTrack)) {
+              resultError("videoCompositorSetLayout", "video track [" + trackId + "] not found !", result);
+              return;
+            }
+            Boolean mirror = (Boolean) tile.get("mirror");
+            layouts.add(new FlutterRTCVideoCompositor.TileLayout((VideoTrack) track,
+                    ((Number) tile.get("x")).floatValue(),
+                    ((Number) tile.get("y")).floatValue(),
+                    ((Number) tile.get("width")).floatValue(),
+                    ((Number) tile.get("height")).floatValue(),
+                    mirror != null && mirror));
+          }
+        }
+        compositor.setLayout(width == null ? 0 : width.intValue(), height == null ? 0 : height.intValue(),
+                maxFps == null ? 0 : maxFps.intValue(), layouts);
+        result.success(null);
+        break;
+      }
+      case "videoCompositorDispose": {
+        int textureId = call.argument("textureId");
+        FlutterRTCVideoCompositor compositor = compositors.get(textureId);
+        if (compositor == null) {
+          resultError("videoCompositorDispose", "compositor [" + textureId + "] not found !", result);
+          return;
+        }
+        compositor.Dispose();
+        compositors.delete(textureId);
+        result.success(null);
+        break;
+      }
       case "mediaStreamTrackHasTorch": {
         String trackId = call.argument("trackId");
         getUserMediaImpl.hasTorch(trackId, result);
@@ -521,7 +876,38 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
       }
       case "mediaStreamTrackSwitchCamera": {
         String trackId = call.argument("trackId");
-        getUserMediaImpl.switchCamera(trackId, result);
+        Boolean stats = call.argument("stats");
+        getUserMediaImpl.switchCamera(trackId, stats != null && stats, result);
+        break;
+      }
+      case "mediaStreamTrackSetCameraHotStandby": {
+        String trackId = call.argument("trackId");
+        Boolean enabled = call.argument("enabled");
+        getUserMediaImpl.setCameraHotStandby(trackId, enabled != null && enabled, result);
+        break;
+      }
+      case "mediaStreamTrackClone": {
+        String trackId = call.argument("trackId");
+        MediaStreamTrack track = localTracks.get(trackId);
+        if (track == null) {
+          resultError("mediaStreamTrackClone", "track [" + trackId + "] not found", result);
+          return;
+        }
+        ConstraintsMap clone = track.kind().equals("video")
+                ? getUserMediaImpl.cloneVideoTrack(trackId)
+                : getUserMediaImpl.cloneAudioTrack(trackId);
+        if (clone == null) {
+          resultError("mediaStreamTrackClone", "track [" + trackId + "] is not a camera or microphone track", result);
+          return;
+        }
+        result.success(clone.toMap());
+        break;
+      }
+      case "mediaStreamTrackApplyConstraints": {
+        String trackId = call.argument("trackId");
+        Map<String, Object> constraints = call.argument("constraints");
+        getUserMediaImpl.applyVideoConstraints(trackId,
+                new ConstraintsMap(constraints != null ? constraints : new HashMap<>()), result);
         break;
       }
       case "setVolume": {
@@ -1299,13 +1685,9 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
 
   public void getSources(Result result) {
     ConstraintsArray array = new ConstraintsArray();
-    String[] names = new String[Camera.getNumberOfCameras()];
 
-    for (int i = 0; i < Camera.getNumberOfCameras(); ++i) {
-      ConstraintsMap info = getCameraInfo(i);
-      if (info != null) {
-        array.pushMap(info);
-      }
+    for (CameraCapabilities.CameraInfo camera : CameraCapabilities.get(context).getCameras()) {
+      array.pushMap(getCameraInfo(camera));
     }
 
     if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
@@ -1381,18 +1763,25 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     result.success(resultMap);
   }
 
-  public void trackDispose(final String trackId) {
+  /**
+   * @param onDisposed run once the track's capturer, if any, has stopped.
+   */
+  public void trackDispose(final String trackId, final Runnable onDisposed) {
     MediaStreamTrack track = localTracks.get(trackId);
     if (track == null) {
       Log.d(TAG, "trackDispose() track is null");
+      onDisposed.run();
       return;
     }
     removeTrackForRendererById(trackId);
     track.setEnabled(false);
+    localTracks.remove(trackId);
     if (track.kind().equals("video")) {
-      getUserMediaImpl.removeVideoCapturer(trackId);
+      getUserMediaImpl.removeVideoCapturer(trackId, onDisposed);
+    } else {
+      getUserMediaImpl.removeAudioTrack(trackId);
+      onDisposed.run();
     }
-    localTracks.remove(trackId);
   }
 
   public void mediaStreamTrackSetEnabled(final String id, final boolean enabled, String peerConnectionId) {
@@ -1482,28 +1871,23 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     localTracks.remove(_trackId);
     if (track.kind().equals("audio")) {
       stream.removeTrack((AudioTrack) track);
+      getUserMediaImpl.removeAudioTrack(_trackId);
     } else if (track.kind().equals("video")) {
       stream.removeTrack((VideoTrack) track);
-      getUserMediaImpl.removeVideoCapturer(_trackId);
+      getUserMediaImpl.removeVideoCapturer(_trackId, null);
     }
   }
 
-  public ConstraintsMap getCameraInfo(int index) {
-    CameraInfo info = new CameraInfo();
-
-    try {
-      Camera.getCameraInfo(index, info);
-    } catch (Exception e) {
-      Logging.e("CameraEnumerationAndroid", "getCameraInfo failed on index " + index, e);
-      return null;
-    }
+  public ConstraintsMap getCameraInfo(CameraCapabilities.CameraInfo camera) {
     ConstraintsMap params = new ConstraintsMap();
-    String facing = info.facing == 1 ? "front" : "back";
     params.putString("label",
-            "Camera " + index + ", Facing " + facing + ", Orientation " + info.orientation);
-    params.putString("deviceId", "" + index);
-    params.putString("facing", facing);
+            "Camera " + camera.deviceId + ", Facing " + camera.facing + ", Orientation " + camera.orientation);
+    params.putString("deviceId", camera.deviceId);
+    params.putString("facing", camera.facing);
     params.putString("kind", "videoinput");
+    if (camera.hardwareLevel != null) {
+      params.putString("hardwareLevel", camera.hardwareLevel);
+    }
     return params;
   }
 
@@ -1766,29 +2150,44 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     return false;
   }
 
-  public void streamDispose(final String streamId) {
+  /**
+   * @param onDisposed run once the stream's capturers have stopped.
+   */
+  public void streamDispose(final String streamId, final Runnable onDisposed) {
     MediaStream stream = localStreams.get(streamId);
     if (stream != null) {
-      streamDispose(stream);
       localStreams.remove(streamId);
       removeStreamForRendererById(streamId);
+      streamDispose(stream, onDisposed);
     } else {
       Log.d(TAG, "streamDispose() mediaStream is null");
+      onDisposed.run();
     }
   }
 
-  public void streamDispose(final MediaStream stream) {
-    List<VideoTrack> videoTracks = stream.videoTracks;
-    for (VideoTrack track : videoTracks) {
+  /**
+   * @param onDisposed if not {@code null}, run once the stream's capturers
+   *                   have stopped.
+   */
+  public void streamDispose(final MediaStream stream, @Nullable final Runnable onDisposed) {
+    List<AudioTrack> audioTracks = new ArrayList<>(stream.audioTracks);
+    for (AudioTrack track : audioTracks) {
       localTracks.remove(track.id());
-      getUserMediaImpl.removeVideoCapturer(track.id());
+      getUserMediaImpl.removeAudioTrack(track.id());
       stream.removeTrack(track);
     }
-    List<AudioTrack> audioTracks = stream.audioTracks;
-    for (AudioTrack track : audioTracks) {
+    List<VideoTrack> videoTracks = new ArrayList<>(stream.videoTracks);
+    for (int i = 0; i < videoTracks.size(); i++) {
+      VideoTrack track = videoTracks.get(i);
       localTracks.remove(track.id());
+      // The removals run in order, so the last one reports them all done.
+      getUserMediaImpl.removeVideoCapturer(track.id(),
+          i == videoTracks.size() - 1 ? onDisposed : null);
       stream.removeTrack(track);
     }
+    if (videoTracks.isEmpty() && onDisposed != null) {
+      onDisposed.run();
+    }
   }
 
   private void removeStreamForRendererById(String streamId) {
@@ -1835,6 +2234,30 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     }
   }
 
+  public void dataChannelSetBufferedAmountLowThreshold(String peerConnectionId, String dataChannelId,
+                                                      long threshold, boolean bufferedAmountChangeEvents,
+                                                      Result result) {
+    PeerConnectionObserver pco
+            = mPeerConnectionObservers.get(peerConnectionId);
+    if (pco == null || pco.getPeerConnection() == null) {
+      resultError("dataChannelSetBufferedAmountLowThreshold", "peerConnection is null", result);
+    } else {
+      pco.dataChannelSetBufferedAmountLowThreshold(dataChannelId, threshold,
+              bufferedAmountChangeEvents, result);
+    }
+  }
+
+  public void dataChannelSetSendQueue(String peerConnectionId, String dataChannelId,
+                                      long maxBufferedAmount, Result result) {
+    PeerConnectionObserver pco
+            = mPeerConnectionObservers.get(peerConnectionId);
+    if (pco == null || pco.getPeerConnection() == null) {
+      resultError("dataChannelSetSendQueue", "peerConnection is null", result);
+    } else {
+      pco.dataChannelSetSendQueue(dataChannelId, maxBufferedAmount, result);
+    }
+  }
+
   public void dataChannelClose(String peerConnectionId, String dataChannelId) {
     // Forward to PeerConnectionObserver which deals with DataChannels
     // because DataChannel is owned by PeerConnection.
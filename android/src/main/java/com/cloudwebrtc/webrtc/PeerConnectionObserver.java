@@ -8,6 +8,7 @@ import com.cloudwebrtc.webrtc.audio.AudioSwitchManager;
 import com.cloudwebrtc.webrtc.utils.AnyThreadSink;
 import com.cloudwebrtc.webrtc.utils.ConstraintsArray;
 import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+import com.cloudwebrtc.webrtc.utils.EventMap;
 
 import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.EventChannel;
@@ -46,6 +47,7 @@ import org.webrtc.VideoTrack;
 class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.StreamHandler {
   private final static String TAG = FlutterWebRTCPlugin.TAG;
   private final Map<String, DataChannel> dataChannels = new HashMap<>();
+  private final Map<String, DataChannelObserver> dataChannelObservers = new HashMap<>();
   private final BinaryMessenger messenger;
   private final String id;
   private PeerConnection peerConnection;
@@ -57,6 +59,15 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
   private final EventChannel eventChannel;
   private EventChannel.EventSink eventSink;
 
+  private static final EventMap.StateEvents<PeerConnection.IceConnectionState> iceConnectionStateEvents =
+      new EventMap.StateEvents<>(PeerConnection.IceConnectionState.class, "iceConnectionState");
+  private static final EventMap.StateEvents<PeerConnection.IceGatheringState> iceGatheringStateEvents =
+      new EventMap.StateEvents<>(PeerConnection.IceGatheringState.class, "iceGatheringState");
+  private static final EventMap.StateEvents<PeerConnection.SignalingState> signalingStateEvents =
+      new EventMap.StateEvents<>(PeerConnection.SignalingState.class, "signalingState");
+  private static final EventMap.StateEvents<PeerConnection.PeerConnectionState> connectionStateEvents =
+      new EventMap.StateEvents<>(PeerConnection.PeerConnectionState.class, "peerConnectionState");
+
   PeerConnectionObserver(PeerConnection.RTCConfiguration configuration, StateProvider stateProvider, BinaryMessenger messenger, String id) {
     this.configuration = configuration;
     this.stateProvider = stateProvider;
@@ -99,7 +110,11 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     peerConnection.close();
     remoteStreams.clear();
     remoteTracks.clear();
+    for (DataChannelObserver observer : dataChannelObservers.values()) {
+      observer.close();
+    }
     dataChannels.clear();
+    dataChannelObservers.clear();
   }
 
   void dispose() {
@@ -150,6 +165,10 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
   void dataChannelClose(String dataChannelId) {
     DataChannel dataChannel = dataChannels.get(dataChannelId);
     if (dataChannel != null) {
+      DataChannelObserver observer = dataChannelObservers.remove(dataChannelId);
+      if (observer != null) {
+        observer.close();
+      }
       dataChannel.close();
       dataChannels.remove(dataChannelId);
     } else {
@@ -158,15 +177,64 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
   }
 
   void dataChannelSend(String dataChannelId, ByteBuffer byteBuffer, Boolean isBinary) {
-    DataChannel dataChannel = dataChannels.get(dataChannelId);
-    if (dataChannel != null) {
+    DataChannelObserver observer = dataChannelObservers.get(dataChannelId);
+    if (observer != null) {
       DataChannel.Buffer buffer = new DataChannel.Buffer(byteBuffer, isBinary);
-      dataChannel.send(buffer);
+      observer.send(buffer);
     } else {
       Log.d(TAG, "dataChannelSend() dataChannel is null");
     }
   }
 
+  void dataChannelSetBufferedAmountLowThreshold(String dataChannelId, long threshold,
+                                                boolean bufferedAmountChangeEvents, Result result) {
+    DataChannelObserver observer = dataChannelObservers.get(dataChannelId);
+    if (observer != null) {
+      observer.setBufferedAmountLowThreshold(threshold, bufferedAmountChangeEvents);
+      result.success(null);
+    } else {
+      resultError("dataChannelSetBufferedAmountLowThreshold", "dataChannel is null", result);
+    }
+  }
+
+  void dataChannelSetSendQueue(String dataChannelId, long maxBufferedAmount, Result result) {
+    DataChannelObserver observer = dataChannelObservers.get(dataChannelId);
+    if (observer != null) {
+      observer.setSendQueue(maxBufferedAmount);
+      result.success(null);
+    } else {
+      resultError("dataChannelSetSendQueue", "dataChannel is null", result);
+    }
+  }
+
+  void dataChannelSendFile(String dataChannelId, String path, int chunkSize, long maxBufferedAmount,
+                           Result result) {
+    DataChannelObserver observer = dataChannelObservers.get(dataChannelId);
+    if (observer != null) {
+      observer.sendFile(path, chunkSize, maxBufferedAmount, result);
+    } else {
+      resultError("dataChannelSendFile", "dataChannel is null", result);
+    }
+  }
+
+  void dataChannelReceiveFile(String dataChannelId, String path, long expectedBytes, Result result) {
+    DataChannelObserver observer = dataChannelObservers.get(dataChannelId);
+    if (observer != null) {
+      observer.receiveFile(path, expectedBytes, result);
+    } else {
+      resultError("dataChannelReceiveFile", "dataChannel is null", result);
+    }
+  }
+
+  void dataChannelStopReceiveFile(String dataChannelId, Result result) {
+    DataChannelObserver observer = dataChannelObservers.get(dataChannelId);
+    if (observer != null) {
+      observer.stopReceiveFile(result);
+    } else {
+      resultError("dataChannelStopReceiveFile", "dataChannel is null", result);
+    }
+  }
+
   RtpTransceiver getRtpTransceiverById(String id) {
     RtpTransceiver transceiver = transceivers.get(id);
     if (null == transceiver) {
@@ -202,52 +270,41 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
 
   void handleStatsReport(RTCStatsReport rtcStatsReport, Result result) {
       Map<String, RTCStats>    reports = rtcStatsReport.getStatsMap();
-      ConstraintsMap params = new ConstraintsMap();
-      ConstraintsArray stats = new ConstraintsArray();
+      ConstraintsMap params = new ConstraintsMap(1);
+      ConstraintsArray stats = new ConstraintsArray(reports.size());
 
       for (RTCStats report : reports.values()) {
-          ConstraintsMap report_map = new ConstraintsMap();
+          ConstraintsMap report_map = new ConstraintsMap(4);
 
           report_map.putString("id", report.getId());
           report_map.putString("type", report.getType());
           report_map.putDouble("timestamp", report.getTimestampUs());
 
           Map<String, Object> values = report.getMembers();
-          ConstraintsMap v_map = new ConstraintsMap();
-          for (String key : values.keySet()) {
-              Object v = values.get(key);
-              if(v instanceof String) {
-                  v_map.putString(key, (String)v);
+          ConstraintsMap v_map = new ConstraintsMap(values.size());
+          for (Map.Entry<String, Object> member : values.entrySet()) {
+              String key = member.getKey();
+              Object v = member.getValue();
+              if(v instanceof String || v instanceof Integer || v instanceof Long
+                      || v instanceof Double || v instanceof Boolean) {
+                  // Already boxed; store as is rather than unboxing and reboxing.
+                  v_map.putObject(key, v);
               } else if(v instanceof String[]) {
-                  ConstraintsArray arr = new ConstraintsArray();
+                  ConstraintsArray arr = new ConstraintsArray(((String[])v).length);
                   for(String s : (String[])v) {
                       arr.pushString(s);
                   }
                   v_map.putArray(key, arr.toArrayList());
-              } else if(v instanceof Integer) {
-                  v_map.putInt(key, (Integer)v);
-              } else if(v instanceof Long) {
-                  v_map.putLong(key, (Long)v);
-              } else if(v instanceof Double) {
-                  v_map.putDouble(key, (Double)v);
-              } else if(v instanceof Boolean) {
-                  v_map.putBoolean(key, (Boolean)v);
               } else if(v instanceof BigInteger){
                   v_map.putLong(key, ((BigInteger)v).longValue());
               }  else if(v instanceof LinkedHashMap) {
-                    ConstraintsMap m = new ConstraintsMap();
-                    for(Map.Entry<String, Object> entry : ((LinkedHashMap<String, Object>)v).entrySet()) {
+                    LinkedHashMap<String, Object> members = (LinkedHashMap<String, Object>)v;
+                    ConstraintsMap m = new ConstraintsMap(members.size());
+                    for(Map.Entry<String, Object> entry : members.entrySet()) {
                         Object value = entry.getValue();
-                        if(value instanceof String) {
-                            m.putString(entry.getKey(), (String)value);
-                        } else if(value instanceof Integer) {
-                            m.putInt(entry.getKey(), (Integer)value);
-                        } else if(value instanceof Long) {
-                            m.putLong(entry.getKey(), (Long)value);
-                        } else if(value instanceof Double) {
-                            m.putDouble(entry.getKey(), (Double)value);
-                        } else if(value instanceof Boolean) {
-                            m.putBoolean(entry.getKey(), (Boolean)value);
+                        if(value instanceof String || value instanceof Integer || value instanceof Long
+                                || value instanceof Double || value instanceof Boolean) {
+                            m.putObject(entry.getKey(), value);
                         } else if(value instanceof BigInteger) {
                             m.putLong(entry.getKey(), ((BigInteger)value).longValue());
                         } else {
@@ -331,10 +388,8 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
 
   @Override
   public void onIceConnectionChange(PeerConnection.IceConnectionState iceConnectionState) {
-    ConstraintsMap params = new ConstraintsMap();
-    params.putString("event", "iceConnectionState");
-    params.putString("state", iceConnectionStateString(iceConnectionState));
-    sendEvent(params);
+    sendEvent(iceConnectionStateEvents.get(iceConnectionState,
+        iceConnectionStateString(iceConnectionState)));
   }
 
   @Override
@@ -349,10 +404,8 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
   @Override
   public void onIceGatheringChange(PeerConnection.IceGatheringState iceGatheringState) {
     Log.d(TAG, "onIceGatheringChange" + iceGatheringState.name());
-    ConstraintsMap params = new ConstraintsMap();
-    params.putString("event", "iceGatheringState");
-    params.putString("state", iceGatheringStateString(iceGatheringState));
-    sendEvent(params);
+    sendEvent(iceGatheringStateEvents.get(iceGatheringState,
+        iceGatheringStateString(iceGatheringState)));
   }
 
   private String getUIDForStream(MediaStream mediaStream) {
@@ -434,8 +487,12 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
   }
 
   void sendEvent(ConstraintsMap event) {
+    sendEvent(event.toMap());
+  }
+
+  void sendEvent(Map<String, Object> event) {
     if (eventSink != null) {
-      eventSink.success(event.toMap());
+      eventSink.success(event);
     }
   }
 
@@ -557,32 +614,25 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     // DataChannel.registerObserver implementation does not allow to
     // unregister, so the observer is registered here and is never
     // unregistered
-    dataChannel.registerObserver(
-        new DataChannelObserver(messenger, id, dcId, dataChannel));
+    DataChannelObserver observer = new DataChannelObserver(messenger, id, dcId, dataChannel);
+    dataChannelObservers.put(dcId, observer);
+    dataChannel.registerObserver(observer);
   }
 
   @Override
   public void onRenegotiationNeeded() {
-    ConstraintsMap params = new ConstraintsMap();
-    params.putString("event", "onRenegotiationNeeded");
-    sendEvent(params);
+    sendEvent(EventMap.event("onRenegotiationNeeded", 0).toMap());
   }
 
   @Override
   public void onSignalingChange(PeerConnection.SignalingState signalingState) {
-    ConstraintsMap params = new ConstraintsMap();
-    params.putString("event", "signalingState");
-    params.putString("state", signalingStateString(signalingState));
-    sendEvent(params);
+    sendEvent(signalingStateEvents.get(signalingState, signalingStateString(signalingState)));
   }
 
   @Override
   public void onConnectionChange(PeerConnection.PeerConnectionState connectionState) {
     Log.d(TAG, "onConnectionChange" + connectionState.name());
-    ConstraintsMap params = new ConstraintsMap();
-    params.putString("event", "peerConnectionState");
-    params.putString("state", connectionStateString(connectionState));
-    sendEvent(params);
+    sendEvent(connectionStateEvents.get(connectionState, connectionStateString(connectionState)));
   }
 
   @Nullable
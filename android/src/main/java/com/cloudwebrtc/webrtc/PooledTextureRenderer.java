@@ -0,0 +1,282 @@
+package com.cloudwebrtc.webrtc;
+
+import android.graphics.Matrix;
+import android.graphics.SurfaceTexture;
+import android.opengl.EGL14;
+import android.opengl.EGLSurface;
+import android.opengl.GLES20;
+
+import org.webrtc.EglBase;
+import org.webrtc.RendererCommon;
+import org.webrtc.ThreadUtils;
+import org.webrtc.VideoFrame;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link TextureRenderer} which draws on a render thread borrowed from a
+ * {@link TextureRenderThreadPool} instead of owning one like
+ * {@link SurfaceTextureRenderer}.
+ *
+ * Only the latest frame is kept; if the shared thread falls behind, older
+ * frames are dropped rather than queued.
+ */
+class PooledTextureRenderer implements TextureRenderer {
+  private final TextureRenderThreadPool pool;
+  private final Object frameLock = new Object();
+  private final Object layoutLock = new Object();
+  private final Matrix drawMatrix = new Matrix();
+  private final Runnable renderRunnable = this::renderPendingFrame;
+  private final VideoRendererStats stats = new VideoRendererStats();
+
+  private TextureRenderThreadPool.RenderThread renderThread;
+  private RendererCommon.RendererEvents rendererEvents;
+  private SurfaceTexture texture;
+  // Only accessed on the render thread.
+  private EGLSurface eglSurface = EGL14.EGL_NO_SURFACE;
+
+  // Guarded by frameLock.
+  private VideoFrame pendingFrame;
+  private boolean renderScheduled;
+  private long minRenderPeriodNs;
+  private long nextFrameTimeNs;
+
+  // Guarded by layoutLock.
+  private boolean isFirstFrameRendered;
+  private int rotatedFrameWidth;
+  private int rotatedFrameHeight;
+  private int frameRotation;
+  private int maxBufferWidth;
+  private int maxBufferHeight;
+  private boolean bufferSizeChanged;
+  private TextureBufferSize bufferSize;
+
+  PooledTextureRenderer(TextureRenderThreadPool pool) {
+    this.pool = pool;
+  }
+
+  @Override
+  public void init(EglBase.Context sharedContext, RendererCommon.RendererEvents rendererEvents) {
+    this.rendererEvents = rendererEvents;
+    synchronized (layoutLock) {
+      isFirstFrameRendered = false;
+      rotatedFrameWidth = 0;
+      rotatedFrameHeight = 0;
+      frameRotation = -1;
+      bufferSize = null;
+    }
+    synchronized (frameLock) {
+      if (renderThread == null) {
+        renderThread = pool.acquire();
+      }
+    }
+  }
+
+  @Override
+  public void surfaceCreated(final SurfaceTexture texture) {
+    this.texture = texture;
+    final TextureRenderThreadPool.RenderThread thread;
+    synchronized (frameLock) {
+      thread = renderThread;
+    }
+    if (thread != null) {
+      thread.post(() -> {
+        thread.releaseSurface(eglSurface);
+        eglSurface = thread.createWindowSurface(texture);
+      });
+    }
+  }
+
+  /**
+   * Releases the window surface and returns the render thread to the pool.
+   * Blocks until the surface is destroyed, so the texture can immediately be
+   * attached to a new surface by a subsequent {@link #init}.
+   */
+  @Override
+  public void release() {
+    final TextureRenderThreadPool.RenderThread thread;
+    synchronized (frameLock) {
+      thread = renderThread;
+      renderThread = null;
+      renderScheduled = false;
+      if (pendingFrame != null) {
+        pendingFrame.release();
+        pendingFrame = null;
+      }
+    }
+    if (thread != null) {
+      final CountDownLatch completionLatch = new CountDownLatch(1);
+      boolean posted = thread.post(() -> {
+        thread.releaseSurface(eglSurface);
+        eglSurface = EGL14.EGL_NO_SURFACE;
+        completionLatch.countDown();
+      });
+      if (posted) {
+        ThreadUtils.awaitUninterruptibly(completionLatch);
+      }
+      pool.release(thread);
+    }
+  }
+
+  @Override
+  public void reset(RendererCommon.RendererEvents rendererEvents) {
+    synchronized (layoutLock) {
+      this.rendererEvents = rendererEvents;
+      isFirstFrameRendered = false;
+      rotatedFrameWidth = 0;
+      rotatedFrameHeight = 0;
+      frameRotation = -1;
+      bufferSize = null;
+    }
+    final TextureRenderThreadPool.RenderThread thread;
+    synchronized (frameLock) {
+      thread = renderThread;
+      if (pendingFrame != null) {
+        pendingFrame.release();
+        pendingFrame = null;
+      }
+    }
+    if (thread != null) {
+      thread.post(() -> {
+        if (eglSurface != EGL14.EGL_NO_SURFACE && thread.makeCurrent(eglSurface)) {
+          GLES20.glClearColor(0, 0, 0, 0);
+          GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+          thread.swapBuffers(eglSurface);
+        }
+      });
+    }
+  }
+
+  @Override
+  public void setFpsReduction(float fps) {
+    synchronized (frameLock) {
+      final long previousRenderPeriodNs = minRenderPeriodNs;
+      if (fps <= 0) {
+        minRenderPeriodNs = Long.MAX_VALUE;
+      } else {
+        minRenderPeriodNs = (long) (TimeUnit.SECONDS.toNanos(1) / fps);
+      }
+      if (minRenderPeriodNs != previousRenderPeriodNs) {
+        // Fps reduction changed - reset frame time.
+        nextFrameTimeNs = System.nanoTime();
+      }
+    }
+  }
+
+  @Override
+  public void disableFpsReduction() {
+    setFpsReduction(Float.POSITIVE_INFINITY);
+  }
+
+  @Override
+  public void setMaxBufferSize(int width, int height) {
+    synchronized (layoutLock) {
+      if (maxBufferWidth != width || maxBufferHeight != height) {
+        maxBufferWidth = width;
+        maxBufferHeight = height;
+        bufferSizeChanged = true;
+      }
+    }
+  }
+
+  @Override
+  public VideoRendererStats getStats() {
+    return stats;
+  }
+
+  @Override
+  public void onFrame(VideoFrame frame) {
+    stats.onFrameReceived();
+    synchronized (frameLock) {
+      if (renderThread == null || minRenderPeriodNs == Long.MAX_VALUE) {
+        return;
+      }
+      if (minRenderPeriodNs > 0) {
+        final long currentTimeNs = System.nanoTime();
+        if (currentTimeNs < nextFrameTimeNs) {
+          return;
+        }
+        nextFrameTimeNs = Math.max(nextFrameTimeNs + minRenderPeriodNs, currentTimeNs);
+      }
+    }
+    updateFrameDimensionsAndReportEvents(frame);
+    synchronized (frameLock) {
+      if (renderThread == null) {
+        return;
+      }
+      if (pendingFrame != null) {
+        pendingFrame.release();
+      }
+      frame.retain();
+      pendingFrame = frame;
+      if (!renderScheduled) {
+        renderScheduled = true;
+        renderThread.post(renderRunnable);
+      }
+    }
+  }
+
+  private void renderPendingFrame() {
+    final VideoFrame frame;
+    final TextureRenderThreadPool.RenderThread thread;
+    synchronized (frameLock) {
+      if (renderThread == null || !renderThread.isCurrentThread()) {
+        // Scheduled before a release(); the frame now belongs to another thread.
+        return;
+      }
+      renderScheduled = false;
+      frame = pendingFrame;
+      pendingFrame = null;
+      thread = renderThread;
+    }
+    if (frame == null) {
+      return;
+    }
+    final TextureBufferSize size;
+    synchronized (layoutLock) {
+      size = bufferSize;
+    }
+    if (size != null && eglSurface != EGL14.EGL_NO_SURFACE && thread.makeCurrent(eglSurface)) {
+      final long startTimeNs = System.nanoTime();
+      GLES20.glClearColor(0, 0, 0, 0);
+      GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+      drawMatrix.reset();
+      thread.frameDrawer.drawFrame(frame, thread.drawer, drawMatrix, 0, 0,
+          size.width, size.height);
+      stats.onFrameRendered(System.nanoTime() - startTimeNs, frame.getTimestampNs());
+      thread.swapBuffers(eglSurface);
+    }
+    frame.release();
+  }
+
+  // Update frame dimensions and report any changes to |rendererEvents|.
+  private void updateFrameDimensionsAndReportEvents(VideoFrame frame) {
+    synchronized (layoutLock) {
+      if (!isFirstFrameRendered) {
+        isFirstFrameRendered = true;
+        if (rendererEvents != null) {
+          rendererEvents.onFirstFrameRendered();
+        }
+      }
+      if (rotatedFrameWidth != frame.getRotatedWidth()
+              || rotatedFrameHeight != frame.getRotatedHeight()
+              || frameRotation != frame.getRotation()) {
+        if (rendererEvents != null) {
+          rendererEvents.onFrameResolutionChanged(
+                  frame.getBuffer().getWidth(), frame.getBuffer().getHeight(), frame.getRotation());
+        }
+        rotatedFrameWidth = frame.getRotatedWidth();
+        rotatedFrameHeight = frame.getRotatedHeight();
+        frameRotation = frame.getRotation();
+        bufferSizeChanged = true;
+      }
+      if (bufferSizeChanged) {
+        bufferSizeChanged = false;
+        bufferSize = TextureBufferSize.fit(
+                rotatedFrameWidth, rotatedFrameHeight, maxBufferWidth, maxBufferHeight);
+        texture.setDefaultBufferSize(bufferSize.width, bufferSize.height);
+      }
+    }
+  }
+}
@@ -1,6 +1,8 @@
 package com.cloudwebrtc.webrtc
 
+import com.cloudwebrtc.webrtc.video.VideoEncoderPolicy
 import org.webrtc.*
+import java.util.IdentityHashMap
 import java.util.concurrent.Callable
 import java.util.concurrent.ExecutorService
 import java.util.concurrent.Executors
@@ -78,94 +80,187 @@ internal class SimulcastVideoEncoderFactoryWrapper(
      * Wraps each stream encoder and performs the following:
      * - Starts up a single thread
      * - When the width/height from [initEncode] doesn't match the frame buffer's,
-     *   scales the frame prior to encoding.
+     *   scales the frame prior to encoding, sharing the scaled buffers with
+     *   the other layers through a [ScaledBufferCache].
      * - Always calls the encoder on the thread.
+     * - Does not block the caller on per-frame calls: [encode], [setRates] and
+     *   [setRateAllocation] are queued to the thread, and encoded images reach
+     *   the [VideoEncoder.Callback] from there as before. One frame is queued
+     *   at most; while it waits, newer frames are dropped with
+     *   [VideoCodecStatus.NO_OUTPUT]. Errors from queued calls are returned by
+     *   the next [encode].
+     * - Caches properties which do not change for the lifetime of the encoder.
+     * - Asks [VideoEncoderPolicy] before initializing a hardware encoder, and
+     *   returns [VideoCodecStatus.FALLBACK_SOFTWARE] if it is refused.
      */
-    private class StreamEncoderWrapper(private val encoder: VideoEncoder) : VideoEncoder {
+    private class StreamEncoderWrapper(
+        private val encoder: VideoEncoder,
+        private val scaledBufferCache: ScaledBufferCache,
+        private val codecName: String?
+    ) : VideoEncoder {
 
         val executor: ExecutorService = Executors.newSingleThreadExecutor()
+        @Volatile
         var streamSettings: VideoEncoder.Settings? = null
 
+        private val lock = Any()
+        // Guarded by lock.
+        private var pendingFrame: VideoFrame? = null
+        private var pendingEncodeInfo: VideoEncoder.EncodeInfo? = null
+        private var keyFrameRequested = false
+        private var pendingError: VideoCodecStatus? = null
+
+        private val encodeRunnable = Runnable { encodePendingFrame() }
+        private val cachedImplementationName: String by lazy { encoder.implementationName }
+        private val cachedIsHardwareEncoder: Boolean by lazy { encoder.isHardwareEncoder }
+        @Volatile
+        private var cachedScalingSettings: VideoEncoder.ScalingSettings? = null
+        // Only accessed from initEncode and release, which libwebrtc serializes.
+        private var hardwareEncoderAcquired = false
+
         override fun initEncode(
             settings: VideoEncoder.Settings,
             callback: VideoEncoder.Callback?
         ): VideoCodecStatus {
             streamSettings = settings
+            dropPendingFrame()
+            cachedScalingSettings = null
+            if (!hardwareEncoderAcquired && codecName != null && cachedIsHardwareEncoder) {
+                if (!VideoEncoderPolicy.instance.acquireHardwareEncoder(
+                        codecName, cachedImplementationName, settings.width, settings.height)) {
+                    return VideoCodecStatus.FALLBACK_SOFTWARE
+                }
+                hardwareEncoderAcquired = true
+            }
             val future = executor.submit(Callable {
-            //     LKLog.i {
-            //         """initEncode() thread=${Thread.currentThread().name} [${Thread.currentThread().id}]
-            //     |  encoder=${encoder.implementationName}
-            //     |  streamSettings:
-            //     |    numberOfCores=${settings.numberOfCores}
-            //     |    width=${settings.width}
-            //     |    height=${settings.height}
-            //     |    startBitrate=${settings.startBitrate}
-            //     |    maxFramerate=${settings.maxFramerate}
-            //     |    automaticResizeOn=${settings.automaticResizeOn}
-            //     |    numberOfSimulcastStreams=${settings.numberOfSimulcastStreams}
-            //     |    lossNotification=${settings.capabilities.lossNotification}
-            // """.trimMargin()
-            //     }
                 return@Callable encoder.initEncode(settings, callback)
             })
-            return future.get()
+            val status = future.get()
+            if (status != VideoCodecStatus.OK) {
+                releaseHardwareEncoder()
+            }
+            return status
+        }
+
+        private fun releaseHardwareEncoder() {
+            if (hardwareEncoderAcquired) {
+                hardwareEncoderAcquired = false
+                VideoEncoderPolicy.instance.releaseHardwareEncoder(codecName!!)
+            }
         }
 
         override fun release(): VideoCodecStatus {
+            dropPendingFrame()
             val future = executor.submit(Callable { return@Callable encoder.release() })
-            return future.get()
+            val status = future.get()
+            releaseHardwareEncoder()
+            return status
         }
 
         override fun encode(
             frame: VideoFrame,
             encodeInfo: VideoEncoder.EncodeInfo?
         ): VideoCodecStatus {
-            val future = executor.submit(Callable {
-                //LKLog.d { "encode() buffer=${frame.buffer}, thread=${Thread.currentThread().name} " +
-                //        "[${Thread.currentThread().id}]" }
-                if (streamSettings == null) {
-                    return@Callable encoder.encode(frame, encodeInfo)
-                } else if (frame.buffer.width == streamSettings!!.width) {
-                    return@Callable encoder.encode(frame, encodeInfo)
-                } else {
-                    // The incoming buffer is different than the streamSettings received in initEncode()
-                    // Need to scale.
-                    val originalBuffer = frame.buffer
-                    // TODO: Do we need to handle when the scale factor is weird?
-                    val adaptedBuffer = originalBuffer.cropAndScale(
-                        0, 0, originalBuffer.width, originalBuffer.height,
-                        streamSettings!!.width, streamSettings!!.height
-                    )
-                    val adaptedFrame = VideoFrame(adaptedBuffer, frame.rotation, frame.timestampNs)
-                    val result = encoder.encode(adaptedFrame, encodeInfo)
-                    adaptedBuffer.release()
-                    return@Callable result
+            synchronized(lock) {
+                val error = pendingError
+                if (error != null) {
+                    pendingError = null
+                    return error
                 }
-            })
-            return future.get()
+                if (pendingFrame != null) {
+                    // The thread has not picked up the previous frame yet.
+                    if (isKeyFrameRequested(encodeInfo)) {
+                        keyFrameRequested = true
+                    }
+                    return VideoCodecStatus.NO_OUTPUT
+                }
+                frame.retain()
+                scaledBufferCache.retain(frame.buffer)
+                pendingFrame = frame
+                pendingEncodeInfo = encodeInfo
+            }
+            executor.execute(encodeRunnable)
+            return VideoCodecStatus.OK
+        }
+
+        private fun encodePendingFrame() {
+            val frame: VideoFrame
+            var encodeInfo: VideoEncoder.EncodeInfo?
+            synchronized(lock) {
+                frame = pendingFrame ?: return
+                encodeInfo = pendingEncodeInfo
+                pendingFrame = null
+                pendingEncodeInfo = null
+                if (keyFrameRequested) {
+                    // Carry over the key frame request of a dropped frame.
+                    keyFrameRequested = false
+                    encodeInfo = KEY_FRAME_ENCODE_INFO
+                }
+            }
+            val status = try {
+                encodeOnThread(frame, encodeInfo)
+            } finally {
+                scaledBufferCache.release(frame.buffer)
+                frame.release()
+            }
+            onAsyncStatus(status)
+        }
+
+        private fun encodeOnThread(
+            frame: VideoFrame,
+            encodeInfo: VideoEncoder.EncodeInfo?
+        ): VideoCodecStatus {
+            val settings = streamSettings
+            if (settings == null || frame.buffer.width == settings.width) {
+                return encoder.encode(frame, encodeInfo)
+            }
+            // The incoming buffer is different than the streamSettings received in initEncode()
+            // Need to scale.
+            // TODO: Do we need to handle when the scale factor is weird?
+            val adaptedBuffer = scaledBufferCache.scale(frame.buffer, settings.width, settings.height)
+            val adaptedFrame = VideoFrame(adaptedBuffer, frame.rotation, frame.timestampNs)
+            val result = encoder.encode(adaptedFrame, encodeInfo)
+            adaptedBuffer.release()
+            return result
+        }
+
+        private fun onAsyncStatus(status: VideoCodecStatus) {
+            if (status.number < 0) {
+                synchronized(lock) {
+                    pendingError = status
+                }
+            }
+        }
+
+        private fun dropPendingFrame() {
+            synchronized(lock) {
+                pendingFrame?.let {
+                    scaledBufferCache.release(it.buffer)
+                    it.release()
+                }
+                pendingFrame = null
+                pendingEncodeInfo = null
+                keyFrameRequested = false
+                pendingError = null
+            }
         }
 
         override fun setRateAllocation(
             allocation: VideoEncoder.BitrateAllocation?,
             frameRate: Int
         ): VideoCodecStatus {
-            val future = executor.submit(Callable {
-                return@Callable encoder.setRateAllocation(
-                    allocation,
-                    frameRate
-                )
-            })
-            return future.get()
+            executor.execute { onAsyncStatus(encoder.setRateAllocation(allocation, frameRate)) }
+            return VideoCodecStatus.OK
         }
 
         override fun getScalingSettings(): VideoEncoder.ScalingSettings {
+            cachedScalingSettings?.let { return it }
             val future = executor.submit(Callable { return@Callable encoder.scalingSettings })
-            return future.get()
+            return future.get().also { cachedScalingSettings = it }
         }
 
         override fun getImplementationName(): String {
-            val future = executor.submit(Callable { return@Callable encoder.implementationName })
-            return future.get()
+            return cachedImplementationName
         }
 
         override fun createNativeVideoEncoder(): Long {
@@ -174,13 +269,12 @@ internal class SimulcastVideoEncoderFactoryWrapper(
         }
 
         override fun isHardwareEncoder(): Boolean {
-            val future = executor.submit(Callable { return@Callable encoder.isHardwareEncoder })
-            return future.get()
+            return cachedIsHardwareEncoder
         }
 
         override fun setRates(rcParameters: VideoEncoder.RateControlParameters?): VideoCodecStatus {
-            val future = executor.submit(Callable { return@Callable encoder.setRates(rcParameters) })
-            return future.get()
+            executor.execute { onAsyncStatus(encoder.setRates(rcParameters)) }
+            return VideoCodecStatus.OK
         }
 
         override fun getResolutionBitrateLimits(): Array<VideoEncoder.ResolutionBitrateLimits> {
@@ -192,10 +286,120 @@ internal class SimulcastVideoEncoderFactoryWrapper(
             val future = executor.submit(Callable { return@Callable encoder.encoderInfo })
             return future.get()
         }
+
+        companion object {
+            private val KEY_FRAME_ENCODE_INFO =
+                VideoEncoder.EncodeInfo(arrayOf(EncodedImage.FrameType.VideoFrameKey))
+
+            private fun isKeyFrameRequested(encodeInfo: VideoEncoder.EncodeInfo?): Boolean {
+                return encodeInfo?.frameTypes?.contains(EncodedImage.FrameType.VideoFrameKey) == true
+            }
+        }
     }
 
-    private class StreamEncoderWrapperFactory(private val factory: VideoEncoderFactory) :
-        VideoEncoderFactory {
+    /**
+     * Scaled copies of the frames being encoded, shared by the
+     * [StreamEncoderWrapper]s of the layers of one simulcast encoder so each
+     * target size is only scaled once per frame. A layer is scaled from the
+     * smallest cached buffer that is at least as large, e.g. the quarter
+     * resolution layer from the half resolution one, instead of from the
+     * full resolution frame.
+     *
+     * Layers [retain] a source buffer when they queue a frame and [release]
+     * it once the frame is encoded or dropped; the scaled copies are released
+     * with the last layer. Texture buffers are not cached: scaling one only
+     * changes its transform matrix, and a cached copy would keep the camera
+     * texture in use and stall capture.
+     */
+    private class ScaledBufferCache {
+        private class Source {
+            var users = 0
+            val entries = ArrayList<Entry>()
+        }
+
+        private class Entry(val width: Int, val height: Int) {
+            // Guarded by ScaledBufferCache.lock.
+            var buffer: VideoFrame.Buffer? = null
+        }
+
+        private val lock = Any()
+        // Guarded by lock.
+        private val sources = IdentityHashMap<VideoFrame.Buffer, Source>()
+
+        fun retain(source: VideoFrame.Buffer) {
+            if (source is VideoFrame.TextureBuffer) {
+                return
+            }
+            synchronized(lock) {
+                sources.getOrPut(source) { Source() }.users++
+            }
+        }
+
+        fun release(source: VideoFrame.Buffer) {
+            if (source is VideoFrame.TextureBuffer) {
+                return
+            }
+            synchronized(lock) {
+                val cached = sources[source] ?: return
+                if (--cached.users == 0) {
+                    sources.remove(source)
+                    for (entry in cached.entries) {
+                        entry.buffer?.release()
+                        entry.buffer = null
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns [source] scaled to [width]x[height]. The caller owns a
+         * reference to the returned buffer and must release it.
+         */
+        fun scale(source: VideoFrame.Buffer, width: Int, height: Int): VideoFrame.Buffer {
+            val cached: Source
+            val entry: Entry
+            synchronized(lock) {
+                cached = sources[source]
+                    ?: return source.cropAndScale(0, 0, source.width, source.height, width, height)
+                entry = cached.entries.firstOrNull { it.width == width && it.height == height }
+                    ?: Entry(width, height).also { cached.entries.add(it) }
+            }
+            // Layers asking for the same size wait for a single scale.
+            synchronized(entry) {
+                val scaleSource: VideoFrame.Buffer
+                synchronized(lock) {
+                    entry.buffer?.let {
+                        it.retain()
+                        return it
+                    }
+                    scaleSource = cached.entries
+                        .filter { it.buffer != null && it.width >= width && it.height >= height }
+                        .minByOrNull { it.width * it.height }?.buffer ?: source
+                    scaleSource.retain()
+                }
+                val scaled = try {
+                    scaleSource.cropAndScale(
+                        0, 0, scaleSource.width, scaleSource.height, width, height
+                    )
+                } finally {
+                    scaleSource.release()
+                }
+                synchronized(lock) {
+                    if (sources[source] === cached) {
+                        scaled.retain()
+                        entry.buffer = scaled
+                    }
+                }
+                return scaled
+            }
+        }
+    }
+
+    private class StreamEncoderWrapperFactory(
+        private val factory: VideoEncoderFactory,
+        private val scaledBufferCache: ScaledBufferCache
+    ) : VideoEncoderFactory {
+
         override fun createEncoder(videoCodecInfo: VideoCodecInfo?): VideoEncoder? {
             val encoder = factory.createEncoder(videoCodecInfo)
             if (encoder == null) {
@@ -204,7 +408,12 @@ internal class SimulcastVideoEncoderFactoryWrapper(
             if (encoder is WrappedNativeVideoEncoder) {
               return encoder
             }
-            return StreamEncoderWrapper(encoder)
+            // FallbackFactory hands out the primary's encoder as is; it already
+            // has its own thread and asks VideoEncoderPolicy once.
+            if (encoder is StreamEncoderWrapper) {
+              return encoder
+            }
+            return StreamEncoderWrapper(encoder, scaledBufferCache, videoCodecInfo?.name)
         }
 
         override fun getSupportedCodecs(): Array<VideoCodecInfo> {
@@ -213,25 +422,28 @@ internal class SimulcastVideoEncoderFactoryWrapper(
     }
 
 
-    private val primary: VideoEncoderFactory
-    private val fallback: VideoEncoderFactory
-    private val native: SimulcastVideoEncoderFactory
+    private val hardwareVideoEncoderFactory: VideoEncoderFactory = HardwareVideoEncoderFactory(
+        sharedContext, enableIntelVp8Encoder, enableH264HighProfile
+    )
 
-    init {
-        val hardwareVideoEncoderFactory = HardwareVideoEncoderFactory(
-            sharedContext, enableIntelVp8Encoder, enableH264HighProfile
-        )
-        primary = StreamEncoderWrapperFactory(hardwareVideoEncoderFactory)
-        fallback = StreamEncoderWrapperFactory(FallbackFactory(primary))
-        native = SimulcastVideoEncoderFactory(primary, fallback)
+    /**
+     * A factory for one simulcast encoder. Its layers share a
+     * [ScaledBufferCache] of their own, so other senders neither evict nor
+     * release their buffers.
+     */
+    private fun createSimulcastFactory(): SimulcastVideoEncoderFactory {
+        val scaledBufferCache = ScaledBufferCache()
+        val primary = StreamEncoderWrapperFactory(hardwareVideoEncoderFactory, scaledBufferCache)
+        val fallback = StreamEncoderWrapperFactory(FallbackFactory(primary), scaledBufferCache)
+        return SimulcastVideoEncoderFactory(primary, fallback)
     }
 
     override fun createEncoder(info: VideoCodecInfo?): VideoEncoder? {
-        return native.createEncoder(info)
+        return createSimulcastFactory().createEncoder(info)
     }
 
     override fun getSupportedCodecs(): Array<VideoCodecInfo> {
-        return native.supportedCodecs
+        return createSimulcastFactory().supportedCodecs
     }
 
 }
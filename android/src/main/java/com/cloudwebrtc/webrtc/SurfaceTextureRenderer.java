@@ -19,8 +19,8 @@ import java.util.concurrent.CountDownLatch;
  * Interaction from C++ rtc::VideoSinkInterface in renderFrame.
  * Interaction from SurfaceHolder lifecycle in surfaceCreated, surfaceChanged, and surfaceDestroyed.
  */
-public class SurfaceTextureRenderer extends EglRenderer {
-  // Callback for reporting renderer events. Read-only after initilization so no lock required.
+public class SurfaceTextureRenderer extends EglRenderer implements TextureRenderer {
+  // Callback for reporting renderer events. Guarded by layoutLock.
   private RendererCommon.RendererEvents rendererEvents;
   private final Object layoutLock = new Object();
   private boolean isRenderingPaused;
@@ -28,6 +28,14 @@ public class SurfaceTextureRenderer extends EglRenderer {
   private int rotatedFrameWidth;
   private int rotatedFrameHeight;
   private int frameRotation;
+  private int maxBufferWidth;
+  private int maxBufferHeight;
+  private boolean bufferSizeChanged;
+  private final VideoRendererStats stats = new VideoRendererStats();
+  // The frame EglRenderer is drawing and when it started uploading it. Only
+  // used on the render thread.
+  private long drawnFrameTimestampNs;
+  private long drawStartTimeNs;
 
   /**
    * In order to render something, you must first call init().
@@ -36,9 +44,10 @@ public class SurfaceTextureRenderer extends EglRenderer {
     super(name);
   }
 
+  @Override
   public void init(final EglBase.Context sharedContext,
                    RendererCommon.RendererEvents rendererEvents) {
-    init(sharedContext, rendererEvents, EglBase.CONFIG_PLAIN, new GlRectDrawer());
+    init(sharedContext, rendererEvents, EglBase.CONFIG_PLAIN, new StatsGlDrawer(new GlRectDrawer()));
   }
 
   /**
@@ -51,8 +60,8 @@ public class SurfaceTextureRenderer extends EglRenderer {
                    RendererCommon.RendererEvents rendererEvents, final int[] configAttributes,
                    RendererCommon.GlDrawer drawer) {
     ThreadUtils.checkIsOnMainThread();
-    this.rendererEvents = rendererEvents;
     synchronized (layoutLock) {
+      this.rendererEvents = rendererEvents;
       isFirstFrameRendered = false;
       rotatedFrameWidth = 0;
       rotatedFrameHeight = 0;
@@ -65,6 +74,18 @@ public class SurfaceTextureRenderer extends EglRenderer {
                    RendererCommon.GlDrawer drawer) {
     init(sharedContext, null /* rendererEvents */, configAttributes, drawer);
   }
+  @Override
+  public void reset(RendererCommon.RendererEvents rendererEvents) {
+    synchronized (layoutLock) {
+      this.rendererEvents = rendererEvents;
+      isFirstFrameRendered = false;
+      rotatedFrameWidth = 0;
+      rotatedFrameHeight = 0;
+      frameRotation = -1;
+    }
+    clearImage();
+  }
+
   /**
    * Limit render framerate.
    *
@@ -86,6 +107,16 @@ public class SurfaceTextureRenderer extends EglRenderer {
     super.disableFpsReduction();
   }
   @Override
+  public void setMaxBufferSize(int width, int height) {
+    synchronized (layoutLock) {
+      if (maxBufferWidth != width || maxBufferHeight != height) {
+        maxBufferWidth = width;
+        maxBufferHeight = height;
+        bufferSizeChanged = true;
+      }
+    }
+  }
+  @Override
   public void pauseVideo() {
     synchronized (layoutLock) {
       isRenderingPaused = true;
@@ -95,12 +126,19 @@ public class SurfaceTextureRenderer extends EglRenderer {
   // VideoSink interface.
   @Override
   public void onFrame(VideoFrame frame) {
+    stats.onFrameReceived();
     updateFrameDimensionsAndReportEvents(frame);
-    super.onFrame(frame);
+    super.onFrame(new StatsVideoFrame(frame));
+  }
+
+  @Override
+  public VideoRendererStats getStats() {
+    return stats;
   }
 
   private SurfaceTexture texture;
 
+  @Override
   public void surfaceCreated(final SurfaceTexture texture) {
     ThreadUtils.checkIsOnMainThread();
     this.texture = texture;
@@ -114,6 +152,71 @@ public class SurfaceTextureRenderer extends EglRenderer {
     ThreadUtils.awaitUninterruptibly(completionLatch);
   }
 
+  /**
+   * Shares the buffer of a frame passed to EglRenderer, and notes when the
+   * render thread first reads it: EglRenderer only draws its latest pending
+   * frame, and its VideoFrameDrawer reads the buffer right before uploading
+   * it.
+   */
+  private class StatsVideoFrame extends VideoFrame {
+    private boolean drawing;
+
+    StatsVideoFrame(VideoFrame frame) {
+      super(frame.getBuffer(), frame.getRotation(), frame.getTimestampNs());
+    }
+
+    @Override
+    public Buffer getBuffer() {
+      if (!drawing) {
+        drawing = true;
+        drawStartTimeNs = System.nanoTime();
+        drawnFrameTimestampNs = getTimestampNs();
+      }
+      return super.getBuffer();
+    }
+  }
+
+  /**
+   * Reports the frame noted by {@link StatsVideoFrame} once EglRenderer has
+   * drawn it, timed from the start of its upload.
+   */
+  private class StatsGlDrawer implements RendererCommon.GlDrawer {
+    private final RendererCommon.GlDrawer drawer;
+
+    StatsGlDrawer(RendererCommon.GlDrawer drawer) {
+      this.drawer = drawer;
+    }
+
+    @Override
+    public void drawOes(int oesTextureId, float[] texMatrix, int frameWidth, int frameHeight,
+                        int viewportX, int viewportY, int viewportWidth, int viewportHeight) {
+      drawer.drawOes(oesTextureId, texMatrix, frameWidth, frameHeight,
+              viewportX, viewportY, viewportWidth, viewportHeight);
+      stats.onFrameRendered(System.nanoTime() - drawStartTimeNs, drawnFrameTimestampNs);
+    }
+
+    @Override
+    public void drawRgb(int textureId, float[] texMatrix, int frameWidth, int frameHeight,
+                        int viewportX, int viewportY, int viewportWidth, int viewportHeight) {
+      drawer.drawRgb(textureId, texMatrix, frameWidth, frameHeight,
+              viewportX, viewportY, viewportWidth, viewportHeight);
+      stats.onFrameRendered(System.nanoTime() - drawStartTimeNs, drawnFrameTimestampNs);
+    }
+
+    @Override
+    public void drawYuv(int[] yuvTextures, float[] texMatrix, int frameWidth, int frameHeight,
+                        int viewportX, int viewportY, int viewportWidth, int viewportHeight) {
+      drawer.drawYuv(yuvTextures, texMatrix, frameWidth, frameHeight,
+              viewportX, viewportY, viewportWidth, viewportHeight);
+      stats.onFrameRendered(System.nanoTime() - drawStartTimeNs, drawnFrameTimestampNs);
+    }
+
+    @Override
+    public void release() {
+      drawer.release();
+    }
+  }
+
   // Update frame dimensions and report any changes to |rendererEvents|.
   private void updateFrameDimensionsAndReportEvents(VideoFrame frame) {
     synchronized (layoutLock) {
@@ -135,8 +238,14 @@ public class SurfaceTextureRenderer extends EglRenderer {
         }
         rotatedFrameWidth = frame.getRotatedWidth();
         rotatedFrameHeight = frame.getRotatedHeight();
-        texture.setDefaultBufferSize(rotatedFrameWidth, rotatedFrameHeight);
         frameRotation = frame.getRotation();
+        bufferSizeChanged = true;
+      }
+      if (bufferSizeChanged) {
+        bufferSizeChanged = false;
+        TextureBufferSize size = TextureBufferSize.fit(
+                rotatedFrameWidth, rotatedFrameHeight, maxBufferWidth, maxBufferHeight);
+        texture.setDefaultBufferSize(size.width, size.height);
       }
     }
   }
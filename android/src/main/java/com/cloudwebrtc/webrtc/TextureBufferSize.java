@@ -0,0 +1,38 @@
+package com.cloudwebrtc.webrtc;
+
+/**
+ * The size of the {@link android.graphics.SurfaceTexture} buffer a video frame
+ * is drawn into. Frames are never upscaled, and are only downscaled as far as
+ * the texture's display size allows, so a thumbnail of a 1080p stream gets a
+ * thumbnail-sized buffer instead of a 1080p one.
+ */
+final class TextureBufferSize {
+  final int width;
+  final int height;
+
+  private TextureBufferSize(int width, int height) {
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * @param frameWidth  rotated frame width.
+   * @param frameHeight rotated frame height.
+   * @param maxWidth    display width of the texture in physical pixels, or 0
+   *                    if unknown.
+   * @param maxHeight   display height of the texture in physical pixels, or 0
+   *                    if unknown.
+   */
+  static TextureBufferSize fit(int frameWidth, int frameHeight, int maxWidth, int maxHeight) {
+    if (maxWidth <= 0 || maxHeight <= 0 || frameWidth <= 0 || frameHeight <= 0) {
+      return new TextureBufferSize(frameWidth, frameHeight);
+    }
+    // Scale to cover the display size so the frame stays sharp whether it is
+    // shown contained or cropped, keeping the frame's aspect ratio.
+    float scale = Math.min(1f,
+        Math.max((float) maxWidth / frameWidth, (float) maxHeight / frameHeight));
+    return new TextureBufferSize(
+        Math.max(1, Math.round(frameWidth * scale)),
+        Math.max(1, Math.round(frameHeight * scale)));
+  }
+}
@@ -0,0 +1,214 @@
+package com.cloudwebrtc.webrtc;
+
+import android.graphics.SurfaceTexture;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLSurface;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import org.webrtc.EglBase;
+import org.webrtc.EglBase14;
+import org.webrtc.GlRectDrawer;
+import org.webrtc.VideoFrameDrawer;
+
+/**
+ * A small set of render threads, each with a single EGL context shared with
+ * the root context, that {@link PooledTextureRenderer}s are multiplexed onto.
+ * Every renderer gets its own window surface, and the thread switches between
+ * surfaces per frame, so a grid of N textures costs {@link #size()} threads
+ * and contexts instead of N.
+ */
+class TextureRenderThreadPool {
+  private static final String TAG = FlutterWebRTCPlugin.TAG;
+  private static final int MAX_THREADS = 4;
+
+  private final EglBase14.Context sharedContext;
+  private final RenderThread[] threads;
+
+  /**
+   * One thread per two cores, capped at {@link #MAX_THREADS}.
+   */
+  static int defaultSize() {
+    return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() / 2, MAX_THREADS));
+  }
+
+  /**
+   * Returns {@code true} if {@code sharedContext} can be shared with the raw
+   * EGL14 contexts created by the pool.
+   */
+  static boolean isSupported(EglBase.Context sharedContext) {
+    return sharedContext instanceof EglBase14.Context;
+  }
+
+  TextureRenderThreadPool(EglBase.Context sharedContext, int size) {
+    this.sharedContext = (EglBase14.Context) sharedContext;
+    this.threads = new RenderThread[Math.max(1, size)];
+  }
+
+  int size() {
+    return threads.length;
+  }
+
+  /**
+   * Returns the render thread with the fewest renderers, starting it if
+   * needed. Every call must be balanced with {@link #release}.
+   */
+  synchronized RenderThread acquire() {
+    int index = 0;
+    for (int i = 0; i < threads.length; i++) {
+      if (threads[i] == null) {
+        threads[i] = new RenderThread("TextureRenderThread" + i, sharedContext);
+      }
+      if (threads[i].users < threads[index].users) {
+        index = i;
+      }
+    }
+    threads[index].users++;
+    return threads[index];
+  }
+
+  synchronized void release(RenderThread thread) {
+    thread.users--;
+  }
+
+  synchronized void dispose() {
+    for (int i = 0; i < threads.length; i++) {
+      if (threads[i] != null) {
+        threads[i].quit();
+        threads[i] = null;
+      }
+    }
+  }
+
+  static class RenderThread {
+    private static final int[] CONFIG_ATTRIBUTES = {
+        EGL14.EGL_RED_SIZE, 8,
+        EGL14.EGL_GREEN_SIZE, 8,
+        EGL14.EGL_BLUE_SIZE, 8,
+        EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
+        EGL14.EGL_SURFACE_TYPE, EGL14.EGL_WINDOW_BIT | EGL14.EGL_PBUFFER_BIT,
+        EGL14.EGL_NONE
+    };
+
+    private final HandlerThread thread;
+    private final Handler handler;
+    private int users = 0;
+
+    // Only accessed on the render thread.
+    private EGLDisplay display = EGL14.EGL_NO_DISPLAY;
+    private EGLConfig config;
+    private EGLContext context = EGL14.EGL_NO_CONTEXT;
+    private EGLSurface pbufferSurface = EGL14.EGL_NO_SURFACE;
+    private EGLSurface currentSurface = EGL14.EGL_NO_SURFACE;
+    final GlRectDrawer drawer = new GlRectDrawer();
+    final VideoFrameDrawer frameDrawer = new VideoFrameDrawer();
+
+    RenderThread(String name, EglBase14.Context sharedContext) {
+      thread = new HandlerThread(name);
+      thread.start();
+      handler = new Handler(thread.getLooper());
+      handler.post(() -> initEgl(sharedContext));
+    }
+
+    /**
+     * @return {@code false} if the thread has already been shut down.
+     */
+    boolean post(Runnable r) {
+      return handler.post(r);
+    }
+
+    boolean isCurrentThread() {
+      return Thread.currentThread() == thread;
+    }
+
+    boolean isReady() {
+      return context != EGL14.EGL_NO_CONTEXT;
+    }
+
+    EGLSurface createWindowSurface(SurfaceTexture texture) {
+      if (!isReady()) {
+        return EGL14.EGL_NO_SURFACE;
+      }
+      EGLSurface surface = EGL14.eglCreateWindowSurface(
+          display, config, texture, new int[] {EGL14.EGL_NONE}, 0);
+      if (surface == EGL14.EGL_NO_SURFACE) {
+        Log.e(TAG, "eglCreateWindowSurface failed: 0x" + Integer.toHexString(EGL14.eglGetError()));
+      }
+      return surface;
+    }
+
+    boolean makeCurrent(EGLSurface surface) {
+      if (surface == currentSurface) {
+        return true;
+      }
+      if (!EGL14.eglMakeCurrent(display, surface, surface, context)) {
+        Log.e(TAG, "eglMakeCurrent failed: 0x" + Integer.toHexString(EGL14.eglGetError()));
+        return false;
+      }
+      currentSurface = surface;
+      return true;
+    }
+
+    void swapBuffers(EGLSurface surface) {
+      EGL14.eglSwapBuffers(display, surface);
+    }
+
+    void releaseSurface(EGLSurface surface) {
+      if (surface == EGL14.EGL_NO_SURFACE) {
+        return;
+      }
+      if (surface == currentSurface) {
+        makeCurrent(pbufferSurface);
+      }
+      EGL14.eglDestroySurface(display, surface);
+    }
+
+    private void initEgl(EglBase14.Context sharedContext) {
+      display = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+      int[] version = new int[2];
+      if (!EGL14.eglInitialize(display, version, 0, version, 1)) {
+        Log.e(TAG, "eglInitialize failed: 0x" + Integer.toHexString(EGL14.eglGetError()));
+        return;
+      }
+      EGLConfig[] configs = new EGLConfig[1];
+      int[] numConfigs = new int[1];
+      if (!EGL14.eglChooseConfig(display, CONFIG_ATTRIBUTES, 0, configs, 0, 1, numConfigs, 0)
+          || numConfigs[0] == 0) {
+        Log.e(TAG, "eglChooseConfig failed: 0x" + Integer.toHexString(EGL14.eglGetError()));
+        return;
+      }
+      config = configs[0];
+      EGLContext eglContext = EGL14.eglCreateContext(display, config, sharedContext.getRawContext(),
+          new int[] {EGL14.EGL_CONTEXT_CLIENT_VERSION, 2, EGL14.EGL_NONE}, 0);
+      if (eglContext == EGL14.EGL_NO_CONTEXT) {
+        Log.e(TAG, "eglCreateContext failed: 0x" + Integer.toHexString(EGL14.eglGetError()));
+        return;
+      }
+      pbufferSurface = EGL14.eglCreatePbufferSurface(display, config,
+          new int[] {EGL14.EGL_WIDTH, 1, EGL14.EGL_HEIGHT, 1, EGL14.EGL_NONE}, 0);
+      context = eglContext;
+      makeCurrent(pbufferSurface);
+    }
+
+    private void quit() {
+      handler.post(() -> {
+        if (isReady()) {
+          makeCurrent(pbufferSurface);
+          drawer.release();
+          frameDrawer.release();
+          EGL14.eglMakeCurrent(display, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE,
+              EGL14.EGL_NO_CONTEXT);
+          EGL14.eglDestroySurface(display, pbufferSurface);
+          EGL14.eglDestroyContext(display, context);
+          EGL14.eglReleaseThread();
+          context = EGL14.EGL_NO_CONTEXT;
+        }
+      });
+      thread.quitSafely();
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package com.cloudwebrtc.webrtc;
+
+import android.graphics.SurfaceTexture;
+
+import org.webrtc.EglBase;
+import org.webrtc.RendererCommon;
+import org.webrtc.VideoSink;
+
+/**
+ * Renders {@link org.webrtc.VideoFrame}s into a Flutter texture's
+ * {@link SurfaceTexture}. Implemented by {@link SurfaceTextureRenderer}, which
+ * owns a render thread and EGL context, and by {@link PooledTextureRenderer},
+ * which shares them with other renderers through a
+ * {@link TextureRenderThreadPool}.
+ */
+interface TextureRenderer extends VideoSink {
+
+  void init(EglBase.Context sharedContext, RendererCommon.RendererEvents rendererEvents);
+
+  void surfaceCreated(SurfaceTexture texture);
+
+  void release();
+
+  /**
+   * Drops the current frame and clears the texture, keeping the render
+   * thread and EGL surface. The next frame is reported to
+   * {@code rendererEvents} as a first frame, as after {@link #init}.
+   */
+  void reset(RendererCommon.RendererEvents rendererEvents);
+
+  /**
+   * Limits rendering to {@code fps} frames per second; 0 pauses rendering.
+   */
+  void setFpsReduction(float fps);
+
+  void disableFpsReduction();
+
+  /**
+   * Limits the texture buffer to what is needed to display it at
+   * {@code width}x{@code height} physical pixels; 0 uses the frame size.
+   */
+  void setMaxBufferSize(int width, int height);
+
+  VideoRendererStats getStats();
+}
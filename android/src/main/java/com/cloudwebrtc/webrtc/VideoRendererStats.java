@@ -0,0 +1,82 @@
+package com.cloudwebrtc.webrtc;
+
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Frame counters and timings of a {@link TextureRenderer}. Render times and
+ * capture-to-render latencies are kept for the last {@link #SAMPLE_COUNT}
+ * rendered frames, and percentiles are only computed when the stats are read.
+ */
+final class VideoRendererStats {
+  private static final int SAMPLE_COUNT = 128;
+
+  private long framesReceived;
+  private long framesRendered;
+  private final long[] renderTimesNs = new long[SAMPLE_COUNT];
+  private final long[] latenciesNs = new long[SAMPLE_COUNT];
+  private int renderTimeCount;
+  private int latencyCount;
+
+  synchronized void onFrameReceived() {
+    framesReceived++;
+  }
+
+  /**
+   * @param renderTimeNs       time spent uploading and drawing the frame.
+   * @param captureTimestampNs {@link org.webrtc.VideoFrame#getTimestampNs()}
+   *                           of the frame, on the {@link System#nanoTime()}
+   *                           clock, or 0 if unknown.
+   */
+  synchronized void onFrameRendered(long renderTimeNs, long captureTimestampNs) {
+    renderTimesNs[(int) (framesRendered % SAMPLE_COUNT)] = renderTimeNs;
+    renderTimeCount = Math.min(renderTimeCount + 1, SAMPLE_COUNT);
+    framesRendered++;
+    if (captureTimestampNs > 0) {
+      long latencyNs = System.nanoTime() - captureTimestampNs;
+      // Remote frames may carry timestamps from another clock; skip those.
+      if (latencyNs >= 0 && latencyNs < TimeUnit.SECONDS.toNanos(10)) {
+        latenciesNs[latencyCount % SAMPLE_COUNT] = latencyNs;
+        latencyCount++;
+      }
+    }
+  }
+
+  synchronized void reset() {
+    framesReceived = 0;
+    framesRendered = 0;
+    renderTimeCount = 0;
+    latencyCount = 0;
+  }
+
+  synchronized Map<String, Object> toMap() {
+    ConstraintsMap params = new ConstraintsMap(12);
+    params.putLong("framesReceived", framesReceived);
+    params.putLong("framesRendered", framesRendered);
+    // Frames replaced by a newer one before they were drawn, or skipped by
+    // fps reduction.
+    params.putLong("framesDropped", Math.max(0, framesReceived - framesRendered));
+    putPercentiles(params, "renderTime", renderTimesNs, renderTimeCount);
+    putPercentiles(params, "latency", latenciesNs, Math.min(latencyCount, SAMPLE_COUNT));
+    return params.toMap();
+  }
+
+  private static void putPercentiles(ConstraintsMap params, String name, long[] samples, int count) {
+    if (count == 0) {
+      return;
+    }
+    long[] sorted = Arrays.copyOf(samples, count);
+    Arrays.sort(sorted);
+    params.putDouble(name + "P50Ms", percentileMs(sorted, 50));
+    params.putDouble(name + "P90Ms", percentileMs(sorted, 90));
+    params.putDouble(name + "P99Ms", percentileMs(sorted, 99));
+    params.putDouble(name + "MaxMs", sorted[count - 1] / 1e6);
+  }
+
+  private static double percentileMs(long[] sorted, int percentile) {
+    return sorted[(sorted.length - 1) * percentile / 100] / 1e6;
+  }
+}
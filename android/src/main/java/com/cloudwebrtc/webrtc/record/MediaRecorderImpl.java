@@ -34,7 +34,7 @@ public class MediaRecorderImpl {
         if (videoTrack != null) {
             videoFileRenderer = new VideoFileRenderer(
                 file.getAbsolutePath(),
-                EglUtils.getRootEglBaseContext(),
+                EglUtils.getEglBaseContext(EglUtils.Subsystem.RECORD),
                 audioInterceptor != null
             );
             videoTrack.addSink(videoFileRenderer);
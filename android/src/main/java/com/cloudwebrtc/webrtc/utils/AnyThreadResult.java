@@ -1,13 +1,16 @@
 package com.cloudwebrtc.webrtc.utils;
 
-import android.os.Looper;
-import android.os.Handler;
-
 import io.flutter.plugin.common.MethodChannel;
 
+/**
+ * Replies to a {@link MethodChannel.Result} on the main thread, through the
+ * batched main thread queue used by {@link AnyThreadSink} rather than each
+ * result owning a {@code Handler}. Replies made on the main thread still run
+ * right away, but only after the events already queued from other threads,
+ * so a reply never overtakes them.
+ */
 public final class AnyThreadResult implements MethodChannel.Result {
     final private MethodChannel.Result result;
-    final private Handler handler = new Handler(Looper.getMainLooper());
 
     public AnyThreadResult(MethodChannel.Result result) {
         this.result = result;
@@ -15,24 +18,16 @@ public final class AnyThreadResult implements MethodChannel.Result {
 
     @Override
     public void success(Object o) {
-        post(()->result.success(o));
+        MainThreadBatcher.instance.post(()->result.success(o));
     }
 
     @Override
     public void error(String s, String s1, Object o) {
-        post(()->result.error(s, s1, o));
+        MainThreadBatcher.instance.post(()->result.error(s, s1, o));
     }
 
     @Override
     public void notImplemented() {
-        post(result::notImplemented);
-    }
-
-    private void post(Runnable r) {
-        if(Looper.getMainLooper() == Looper.myLooper()){
-            r.run();
-        }else{
-            handler.post(r);
-        }
+        MainThreadBatcher.instance.post(result::notImplemented);
     }
 }
@@ -1,13 +1,22 @@
 package com.cloudwebrtc.webrtc.utils;
 
-import android.os.Handler;
-import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.HashMap;
 
 import io.flutter.plugin.common.EventChannel;
 
 public final class AnyThreadSink implements EventChannel.EventSink {
     final private EventChannel.EventSink eventSink;
-    final private Handler handler = new Handler(Looper.getMainLooper());
+    /**
+     * Debounced events which have been queued but not yet delivered, by key.
+     */
+    final private HashMap<String, CoalescedEvent> pendingEvents = new HashMap<>();
+    /**
+     * {@link SystemClock#uptimeMillis()} of the last delivery of a coalesced
+     * event, by key. Guarded by {@link #pendingEvents}.
+     */
+    final private HashMap<String, Long> lastDeliveryTimesMs = new HashMap<>();
 
     public AnyThreadSink(EventChannel.EventSink eventSink) {
         this.eventSink = eventSink;
@@ -18,6 +27,35 @@ public final class AnyThreadSink implements EventChannel.EventSink {
         post(()->eventSink.success(o));
     }
 
+    /**
+     * Like {@link #success}, but delivers at most one event per {@code key}
+     * every {@code windowMs}. The first event after a quiet period is
+     * delivered right away; events arriving within the window after it are
+     * collapsed into one, carrying the latest value, delivered at the end of
+     * the window.
+     */
+    public void successDebounced(String key, Object o, long windowMs) {
+        CoalescedEvent event;
+        long delayMs;
+        synchronized (pendingEvents) {
+            event = pendingEvents.get(key);
+            if (event != null) {
+                event.value = o;
+                return;
+            }
+            event = new CoalescedEvent(key, o);
+            pendingEvents.put(key, event);
+            Long lastDeliveryTimeMs = lastDeliveryTimesMs.get(key);
+            delayMs = lastDeliveryTimeMs == null
+                    ? 0 : lastDeliveryTimeMs + windowMs - SystemClock.uptimeMillis();
+        }
+        if (delayMs > 0) {
+            MainThreadBatcher.instance.postDelayed(event, delayMs);
+        } else {
+            post(event);
+        }
+    }
+
     @Override
     public void error(String s, String s1, Object o) {
         post(()->eventSink.error(s, s1, o));
@@ -29,10 +67,28 @@ public final class AnyThreadSink implements EventChannel.EventSink {
     }
 
     private void post(Runnable r) {
-        if(Looper.getMainLooper() == Looper.myLooper()){
-            r.run();
-        }else{
-            handler.post(r);
+        MainThreadBatcher.instance.post(r);
+    }
+
+    private final class CoalescedEvent implements Runnable {
+        final String key;
+        Object value;
+
+        CoalescedEvent(String key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public void run() {
+            Object latest;
+            synchronized (pendingEvents) {
+                // Once removed, later events for the key start a new entry.
+                pendingEvents.remove(key);
+                lastDeliveryTimesMs.put(key, SystemClock.uptimeMillis());
+                latest = value;
+            }
+            eventSink.success(latest);
         }
     }
 }
@@ -11,6 +11,10 @@ public class ConstraintsArray {
         this.mArray = new ArrayList<>();
     }
 
+    public ConstraintsArray(int capacity){
+        this.mArray = new ArrayList<>(capacity);
+    }
+
     public ConstraintsArray(ArrayList<Object> array){
      this.mArray = array;
     }
@@ -12,6 +12,14 @@ public class ConstraintsMap {
         mMap = new HashMap<String,Object>();
     }
 
+    /**
+     * Creates a map presized for {@code expectedSize} entries, so filling it
+     * does not rehash.
+     */
+    public ConstraintsMap(int expectedSize){
+        mMap = new HashMap<String,Object>(expectedSize * 4 / 3 + 1);
+    }
+
     public ConstraintsMap(Map<String, Object> map){
         this.mMap = map;
     }
@@ -101,6 +109,14 @@ public class ConstraintsMap {
         mMap.put(key, value);
     }
 
+    /**
+     * Stores an already boxed value as is, avoiding the unbox/rebox round trip
+     * of the typed setters.
+     */
+    public void putObject(String key, Object value) {
+        mMap.put(key, value);
+    }
+
     public void putNull(String key) {
         mMap.put(key, null);
     }
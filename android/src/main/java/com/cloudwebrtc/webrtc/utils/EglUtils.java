@@ -4,27 +4,56 @@ import android.os.Build;
 
 import org.webrtc.EglBase;
 
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
 public class EglUtils {
+    /**
+     * The consumers of the shared EGL context. They all use the root
+     * context's share group, since capture textures go to encoders and
+     * renderers and decoded textures go to renderers; this only tells them
+     * apart in {@link #getContextStats()}.
+     */
+    public enum Subsystem {
+        CAPTURE,
+        ENCODE,
+        DECODE,
+        RENDER,
+        RECORD,
+    }
+
     /**
      * The root {@link EglBase} instance shared by the entire application for
      * the sake of reducing the utilization of system resources (such as EGL
      * contexts).
      */
-    private static EglBase rootEglBase;
+    private static volatile EglBase rootEglBase;
+
+    /**
+     * How many times each {@link Subsystem} was handed the context, by
+     * ordinal.
+     */
+    private static final AtomicIntegerArray usageCounts = new AtomicIntegerArray(Subsystem.values().length);
 
     /**
      * Lazily creates and returns the one and only {@link EglBase} which will
      * serve as the root for all contexts that are needed.
      */
-    public static synchronized EglBase getRootEglBase() {
-        if (rootEglBase == null) {
-            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP)
-                rootEglBase = EglBase.createEgl10(EglBase.CONFIG_PLAIN);
-            else
-                rootEglBase = EglBase.create();
+    public static EglBase getRootEglBase() {
+        EglBase eglBase = rootEglBase;
+        if (eglBase != null) {
+            return eglBase;
+        }
+        synchronized (EglUtils.class) {
+            if (rootEglBase == null) {
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP)
+                    rootEglBase = EglBase.createEgl10(EglBase.CONFIG_PLAIN);
+                else
+                    rootEglBase = EglBase.create();
+            }
+            return rootEglBase;
         }
-
-        return rootEglBase;
     }
 
     public static EglBase.Context getRootEglBaseContext() {
@@ -32,4 +61,24 @@ public class EglUtils {
 
         return eglBase == null ? null : eglBase.getEglBaseContext();
     }
+
+    /**
+     * Returns the root context for {@code subsystem} to share its EGL
+     * resources with, and counts the use.
+     */
+    public static EglBase.Context getEglBaseContext(Subsystem subsystem) {
+        usageCounts.incrementAndGet(subsystem.ordinal());
+        return getRootEglBaseContext();
+    }
+
+    /**
+     * How many times each subsystem has been handed the context.
+     */
+    public static Map<String, Object> getContextStats() {
+        ConstraintsMap stats = new ConstraintsMap();
+        for (Subsystem subsystem : Subsystem.values()) {
+            stats.putInt(subsystem.name().toLowerCase(Locale.ROOT), usageCounts.get(subsystem.ordinal()));
+        }
+        return stats.toMap();
+    }
 }
@@ -0,0 +1,91 @@
+package com.cloudwebrtc.webrtc.utils;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds the map for an event sent over an {@code EventChannel}. The backing
+ * map is sized for the number of fields up front and is handed to the sink as
+ * is, so building an event is a single map allocation with no rehashing.
+ *
+ * <pre>
+ *   eventSink.success(EventMap.event("dataChannelStateChanged", 2)
+ *       .put("id", id)
+ *       .put("state", state)
+ *       .toMap());
+ * </pre>
+ */
+public final class EventMap {
+
+    private final HashMap<String, Object> map;
+
+    private EventMap(String event, int fieldCount) {
+        // One extra entry for "event"; HashMap resizes past 3/4 of capacity.
+        map = new HashMap<>((fieldCount + 1) * 4 / 3 + 1);
+        map.put("event", event);
+    }
+
+    /**
+     * @param fieldCount the number of fields, besides {@code event}, that will
+     *                   be put into the map.
+     */
+    public static EventMap event(String event, int fieldCount) {
+        return new EventMap(event, fieldCount);
+    }
+
+    public EventMap put(String key, int value) {
+        map.put(key, value);
+        return this;
+    }
+
+    public EventMap put(String key, long value) {
+        map.put(key, value);
+        return this;
+    }
+
+    public EventMap put(String key, double value) {
+        map.put(key, value);
+        return this;
+    }
+
+    public EventMap put(String key, boolean value) {
+        map.put(key, value);
+        return this;
+    }
+
+    public EventMap put(String key, Object value) {
+        map.put(key, value);
+        return this;
+    }
+
+    public Map<String, Object> toMap() {
+        return map;
+    }
+
+    /**
+     * Immutable {@code {event, state}} maps for events whose payload only
+     * depends on an enum value, built once per value and then reused for
+     * every occurrence of that state.
+     */
+    public static final class StateEvents<E extends Enum<E>> {
+        private final String event;
+        private final EnumMap<E, Map<String, Object>> events;
+
+        public StateEvents(Class<E> type, String event) {
+            this.event = event;
+            this.events = new EnumMap<>(type);
+        }
+
+        public synchronized Map<String, Object> get(E state, String stateString) {
+            Map<String, Object> map = events.get(state);
+            if (map == null) {
+                map = Collections.unmodifiableMap(
+                        EventMap.event(event, 1).put("state", stateString).toMap());
+                events.put(state, map);
+            }
+            return map;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.cloudwebrtc.webrtc.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Delivers work to the main thread in batches. Work posted from other threads
+ * is put on a lock-free queue and a single {@link Handler#post} drains
+ * everything queued up to that point in one main looper pass, instead of one
+ * message per event.
+ *
+ * Work posted from the main thread runs immediately, after anything still
+ * queued, so ordering between threads is preserved.
+ */
+final class MainThreadBatcher {
+    static final MainThreadBatcher instance = new MainThreadBatcher();
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private final Runnable drainRunnable = this::drain;
+
+    private MainThreadBatcher() {
+    }
+
+    static boolean isMainThread() {
+        return Looper.getMainLooper() == Looper.myLooper();
+    }
+
+    void post(Runnable r) {
+        if (isMainThread()) {
+            drain();
+            r.run();
+        } else {
+            queue.add(r);
+            if (drainScheduled.compareAndSet(false, true)) {
+                handler.post(drainRunnable);
+            }
+        }
+    }
+
+    /**
+     * Queues {@code r} like {@link #post} once {@code delayMs} have passed.
+     */
+    void postDelayed(final Runnable r, long delayMs) {
+        handler.postDelayed(() -> post(r), delayMs);
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        Runnable r;
+        while ((r = queue.poll()) != null) {
+            r.run();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.cloudwebrtc.webrtc.video;
+
+import androidx.annotation.Nullable;
+
+import org.webrtc.EglBase;
+import org.webrtc.EncodedImage;
+import org.webrtc.HardwareVideoDecoderFactory;
+import org.webrtc.PlatformSoftwareVideoDecoderFactory;
+import org.webrtc.SoftwareVideoDecoderFactory;
+import org.webrtc.VideoCodecInfo;
+import org.webrtc.VideoCodecStatus;
+import org.webrtc.VideoDecoder;
+import org.webrtc.VideoDecoderFactory;
+import org.webrtc.VideoDecoderFallback;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Creates hardware decoders with a software fallback, like
+ * {@code WrappedVideoDecoderFactory}, but asks {@link VideoDecoderBudget}
+ * for a hardware instance before initializing the hardware decoder, so that
+ * sessions with many remote videos fall back to software for the excess
+ * streams instead of exhausting the device's hardware decoders.
+ */
+public class BudgetedVideoDecoderFactory implements VideoDecoderFactory {
+    private final VideoDecoderFactory hardwareVideoDecoderFactory;
+    private final VideoDecoderFactory softwareVideoDecoderFactory = new SoftwareVideoDecoderFactory();
+    private final VideoDecoderFactory platformSoftwareVideoDecoderFactory;
+
+    public BudgetedVideoDecoderFactory(@Nullable EglBase.Context eglContext) {
+        hardwareVideoDecoderFactory = new HardwareVideoDecoderFactory(eglContext);
+        platformSoftwareVideoDecoderFactory = new PlatformSoftwareVideoDecoderFactory(eglContext);
+    }
+
+    @Nullable
+    @Override
+    public VideoDecoder createDecoder(VideoCodecInfo codecInfo) {
+        VideoDecoder softwareDecoder = softwareVideoDecoderFactory.createDecoder(codecInfo);
+        if (softwareDecoder == null) {
+            softwareDecoder = platformSoftwareVideoDecoderFactory.createDecoder(codecInfo);
+        }
+        VideoDecoder hardwareDecoder = hardwareVideoDecoderFactory.createDecoder(codecInfo);
+        if (hardwareDecoder == null) {
+            return softwareDecoder;
+        }
+        if (softwareDecoder == null) {
+            // Nothing to fall back to, so the budget does not apply.
+            return hardwareDecoder;
+        }
+        return new VideoDecoderFallback(softwareDecoder,
+                new BudgetedHardwareDecoder(hardwareDecoder, codecInfo.name));
+    }
+
+    @Override
+    public VideoCodecInfo[] getSupportedCodecs() {
+        Set<VideoCodecInfo> codecs = new LinkedHashSet<>();
+        codecs.addAll(Arrays.asList(hardwareVideoDecoderFactory.getSupportedCodecs()));
+        codecs.addAll(Arrays.asList(softwareVideoDecoderFactory.getSupportedCodecs()));
+        codecs.addAll(Arrays.asList(platformSoftwareVideoDecoderFactory.getSupportedCodecs()));
+        return codecs.toArray(new VideoCodecInfo[0]);
+    }
+
+    /**
+     * Returns {@link VideoCodecStatus#FALLBACK_SOFTWARE} from
+     * {@link #initDecode} when the budget refuses a hardware instance, which
+     * makes {@link VideoDecoderFallback} switch to its software decoder.
+     */
+    private static class BudgetedHardwareDecoder implements VideoDecoder {
+        private final VideoDecoder decoder;
+        private final String codecName;
+        private boolean acquired;
+
+        BudgetedHardwareDecoder(VideoDecoder decoder, String codecName) {
+            this.decoder = decoder;
+            this.codecName = codecName;
+        }
+
+        @Override
+        public VideoCodecStatus initDecode(Settings settings, Callback decodeCallback) {
+            if (!acquired) {
+                if (!VideoDecoderBudget.instance.acquireHardwareDecoder(
+                        codecName, settings.width, settings.height)) {
+                    return VideoCodecStatus.FALLBACK_SOFTWARE;
+                }
+                acquired = true;
+            }
+            VideoCodecStatus status = decoder.initDecode(settings, decodeCallback);
+            if (status != VideoCodecStatus.OK) {
+                releaseBudget();
+            }
+            return status;
+        }
+
+        @Override
+        public VideoCodecStatus release() {
+            VideoCodecStatus status = decoder.release();
+            releaseBudget();
+            return status;
+        }
+
+        @Override
+        public VideoCodecStatus decode(EncodedImage frame, DecodeInfo info) {
+            return decoder.decode(frame, info);
+        }
+
+        @Override
+        public String getImplementationName() {
+            return decoder.getImplementationName();
+        }
+
+        private void releaseBudget() {
+            if (acquired) {
+                acquired = false;
+                VideoDecoderBudget.instance.releaseHardwareDecoder(codecName);
+            }
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.cloudwebrtc.webrtc.video;
+
+import android.content.Context;
+import android.hardware.Camera;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.FlutterWebRTCPlugin;
+
+import org.webrtc.Camera1Enumerator;
+import org.webrtc.Camera2Enumerator;
+import org.webrtc.CameraEnumerationAndroid.CaptureFormat;
+import org.webrtc.CameraEnumerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The cameras of the device, enumerated once and cached, since building a
+ * {@link CameraEnumerator} and querying each camera's characteristics adds
+ * tens of milliseconds to every {@code getUserMedia} and {@code getSources}.
+ *
+ * With Camera2, the cache is dropped when a
+ * {@link CameraManager.AvailabilityCallback} reports a camera that was not
+ * known, or a known camera that is no longer listed, e.g. when an external
+ * camera is plugged in or out. Capture formats are read lazily per camera,
+ * since with Camera1 reading them opens the camera.
+ */
+public final class CameraCapabilities {
+    private static final String TAG = FlutterWebRTCPlugin.TAG;
+
+    public static final class CameraInfo {
+        /**
+         * The name {@link #getEnumerator()} knows the camera by.
+         */
+        public final String name;
+        /**
+         * The id reported by {@code getSources}; the Camera1 index or the
+         * Camera2 camera id.
+         */
+        public final String deviceId;
+        /**
+         * {@code "front"}, {@code "back"} or {@code "external"}.
+         */
+        public final String facing;
+        public final int orientation;
+        /**
+         * The Camera2 hardware level, or {@code null} with Camera1.
+         */
+        @Nullable
+        public final String hardwareLevel;
+        // Guarded by CameraCapabilities.this.
+        private List<CaptureFormat> formats;
+
+        CameraInfo(String name, String deviceId, String facing, int orientation,
+                   @Nullable String hardwareLevel) {
+            this.name = name;
+            this.deviceId = deviceId;
+            this.facing = facing;
+            this.orientation = orientation;
+            this.hardwareLevel = hardwareLevel;
+        }
+
+        public boolean isFrontFacing() {
+            return "front".equals(facing);
+        }
+
+        public boolean matches(String id) {
+            return name.equals(id) || deviceId.equals(id);
+        }
+    }
+
+    private static CameraCapabilities instance;
+
+    private final boolean camera2;
+    private final CameraEnumerator enumerator;
+    @Nullable
+    private final CameraManager cameraManager;
+
+    // Guarded by this. Null until enumerated or after being invalidated.
+    private List<CameraInfo> cameras;
+    // Set when a known camera became unavailable, which happens both when
+    // it is opened and when it is unplugged.
+    private boolean verifyCameraIds;
+
+    public static synchronized CameraCapabilities get(Context context) {
+        if (instance == null) {
+            instance = new CameraCapabilities(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private CameraCapabilities(Context context) {
+        camera2 = Camera2Enumerator.isSupported(context);
+        if (camera2) {
+            Log.d(TAG, "Using Camera2 API.");
+            enumerator = new Camera2Enumerator(context);
+            cameraManager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+            cameraManager.registerAvailabilityCallback(availabilityCallback,
+                    new Handler(Looper.getMainLooper()));
+        } else {
+            Log.d(TAG, "Using Camera1 API.");
+            enumerator = new Camera1Enumerator(false);
+            cameraManager = null;
+        }
+    }
+
+    private final CameraManager.AvailabilityCallback availabilityCallback =
+            new CameraManager.AvailabilityCallback() {
+                @Override
+                public void onCameraAvailable(@NonNull String cameraId) {
+                    synchronized (CameraCapabilities.this) {
+                        if (cameras != null && find(cameras, cameraId) == null) {
+                            Log.d(TAG, "CameraCapabilities: camera " + cameraId + " added");
+                            cameras = null;
+                        }
+                    }
+                }
+
+                @Override
+                public void onCameraUnavailable(@NonNull String cameraId) {
+                    synchronized (CameraCapabilities.this) {
+                        verifyCameraIds = cameras != null;
+                    }
+                }
+            };
+
+    public boolean isCamera2() {
+        return camera2;
+    }
+
+    /**
+     * The enumerator to create capturers with.
+     */
+    public CameraEnumerator getEnumerator() {
+        return enumerator;
+    }
+
+    public synchronized List<CameraInfo> getCameras() {
+        if (cameras != null && !isStale()) {
+            return cameras;
+        }
+        verifyCameraIds = false;
+        List<CameraInfo> list = new ArrayList<>();
+        if (camera2) {
+            for (String name : enumerator.getDeviceNames()) {
+                CameraInfo info = readCamera2Info(name);
+                if (info != null) {
+                    list.add(info);
+                }
+            }
+        } else {
+            String[] names = enumerator.getDeviceNames();
+            for (int index = 0; index < names.length; index++) {
+                CameraInfo info = readCamera1Info(names[index], index);
+                if (info != null) {
+                    list.add(info);
+                }
+            }
+        }
+        cameras = Collections.unmodifiableList(list);
+        return cameras;
+    }
+
+    /**
+     * Looks a camera up by its name or device id.
+     */
+    @Nullable
+    public synchronized CameraInfo getCamera(String id) {
+        return find(getCameras(), id);
+    }
+
+    /**
+     * The capture formats of {@code camera}, read on first use.
+     */
+    public synchronized List<CaptureFormat> getSupportedFormats(CameraInfo camera) {
+        if (camera.formats == null) {
+            List<CaptureFormat> formats = enumerator.getSupportedFormats(camera.name);
+            camera.formats = formats == null
+                    ? Collections.<CaptureFormat>emptyList() : Collections.unmodifiableList(formats);
+        }
+        return camera.formats;
+    }
+
+    @Nullable
+    private static CameraInfo find(List<CameraInfo> cameras, String id) {
+        for (CameraInfo info : cameras) {
+            if (info.matches(id)) {
+                return info;
+            }
+        }
+        return null;
+    }
+
+    private boolean isStale() {
+        if (!camera2) {
+            // Camera1 has no callbacks, but counting is cheap.
+            return Camera.getNumberOfCameras() != cameras.size();
+        }
+        if (!verifyCameraIds) {
+            return false;
+        }
+        verifyCameraIds = false;
+        try {
+            Set<String> ids = new HashSet<>(Arrays.asList(cameraManager.getCameraIdList()));
+            for (CameraInfo info : cameras) {
+                if (!ids.contains(info.deviceId)) {
+                    Log.d(TAG, "CameraCapabilities: camera " + info.deviceId + " removed");
+                    return true;
+                }
+            }
+            return false;
+        } catch (CameraAccessException | RuntimeException e) {
+            Log.w(TAG, "CameraCapabilities: getCameraIdList failed", e);
+            return true;
+        }
+    }
+
+    @Nullable
+    private CameraInfo readCamera2Info(String name) {
+        try {
+            CameraCharacteristics characteristics = cameraManager.getCameraCharacteristics(name);
+            Integer lensFacing = characteristics.get(CameraCharacteristics.LENS_FACING);
+            String facing = lensFacing == null ? "external"
+                    : lensFacing == CameraCharacteristics.LENS_FACING_FRONT ? "front"
+                    : lensFacing == CameraCharacteristics.LENS_FACING_BACK ? "back" : "external";
+            Integer orientation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+            Integer level = characteristics.get(CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL);
+            return new CameraInfo(name, name, facing, orientation == null ? 0 : orientation,
+                    hardwareLevelName(level));
+        } catch (CameraAccessException | RuntimeException e) {
+            Log.w(TAG, "CameraCapabilities: failed to read camera " + name, e);
+            return null;
+        }
+    }
+
+    @Nullable
+    private static CameraInfo readCamera1Info(String name, int index) {
+        Camera.CameraInfo info = new Camera.CameraInfo();
+        try {
+            Camera.getCameraInfo(index, info);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "CameraCapabilities: getCameraInfo failed on index " + index, e);
+            return null;
+        }
+        String facing = info.facing == Camera.CameraInfo.CAMERA_FACING_FRONT ? "front" : "back";
+        return new CameraInfo(name, String.valueOf(index), facing, info.orientation, null);
+    }
+
+    @Nullable
+    private static String hardwareLevelName(@Nullable Integer level) {
+        if (level == null) {
+            return null;
+        }
+        switch (level) {
+            case CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_LEGACY:
+                return "legacy";
+            case CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_LIMITED:
+                return "limited";
+            case CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_FULL:
+                return "full";
+            case 3: // INFO_SUPPORTED_HARDWARE_LEVEL_3, API 24.
+                return "level_3";
+            case 4: // INFO_SUPPORTED_HARDWARE_LEVEL_EXTERNAL, API 28.
+                return "external";
+            default:
+                return String.valueOf(level);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.cloudwebrtc.webrtc.video;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+import com.cloudwebrtc.webrtc.utils.ObjectType;
+
+import org.webrtc.CameraEnumerationAndroid.CaptureFormat;
+
+import java.util.List;
+
+/**
+ * Resolves width, height and frame rate constraints against the capture
+ * formats of a camera. The camera captures the cheapest native format that
+ * covers the ideal size and frame rate, and the video source crops and scales
+ * it down to the ideal output, rather than the camera capturing whatever
+ * format it picks for the requested size and every frame being scaled.
+ */
+public final class CaptureFormatSelector {
+
+    /**
+     * One numeric constraint: a bare value or {@code ideal}, and optional
+     * {@code min}, {@code max} and {@code exact} bounds.
+     */
+    public static final class Constraint {
+        @Nullable
+        public Integer ideal;
+        @Nullable
+        public Integer min;
+        @Nullable
+        public Integer max;
+
+        /**
+         * Reads {@code key} from {@code constraints}, and the legacy
+         * {@code mandatory} {@code minKey}/{@code maxKey} entries if present.
+         */
+        public static Constraint parse(@Nullable ConstraintsMap constraints, String key,
+                                       @Nullable ConstraintsMap mandatory, String minKey, String maxKey) {
+            Constraint constraint = new Constraint();
+            if (constraints != null && constraints.hasKey(key)) {
+                switch (constraints.getType(key)) {
+                    case Number:
+                        constraint.ideal = intValue(constraints.toMap().get(key));
+                        break;
+                    case String:
+                        try {
+                            constraint.ideal = (int) Math.round(Double.parseDouble(constraints.getString(key)));
+                        } catch (NumberFormatException e) {
+                            // Ignored, like an absent constraint.
+                        }
+                        break;
+                    case Map:
+                        ConstraintsMap map = constraints.getMap(key);
+                        constraint.ideal = numberValue(map, "ideal");
+                        constraint.min = numberValue(map, "min");
+                        constraint.max = numberValue(map, "max");
+                        Integer exact = numberValue(map, "exact");
+                        if (exact != null) {
+                            constraint.min = exact;
+                            constraint.max = exact;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (mandatory != null) {
+                Integer min = numberValue(mandatory, minKey);
+                if (min != null && constraint.min == null) {
+                    constraint.min = min;
+                }
+                Integer max = numberValue(mandatory, maxKey);
+                if (max != null && constraint.max == null) {
+                    constraint.max = max;
+                }
+            }
+            return constraint;
+        }
+
+        /**
+         * The value to aim for: {@code ideal}, else {@code min} (which the
+         * legacy {@code mandatory} constraints have always been used as),
+         * else {@code defaultValue}, within the bounds.
+         */
+        public int target(int defaultValue) {
+            int value = ideal != null ? ideal : min != null ? min : defaultValue;
+            if (max != null) {
+                value = Math.min(value, max);
+            }
+            if (min != null) {
+                value = Math.max(value, min);
+            }
+            return value;
+        }
+
+        int required() {
+            return min == null ? 0 : min;
+        }
+
+        @Nullable
+        private static Integer numberValue(ConstraintsMap map, String key) {
+            return map.hasKey(key) && map.getType(key) == ObjectType.Number
+                    ? intValue(map.toMap().get(key)) : null;
+        }
+
+        private static int intValue(Object value) {
+            return (int) Math.round(((Number) value).doubleValue());
+        }
+    }
+
+    /**
+     * The format to start the capturer with, and the output to adapt the
+     * video source to.
+     */
+    public static final class Selection {
+        public final int captureWidth;
+        public final int captureHeight;
+        public final int captureFps;
+        public final int width;
+        public final int height;
+        public final int fps;
+
+        public Selection(int captureWidth, int captureHeight, int captureFps, int width, int height, int fps) {
+            this.captureWidth = captureWidth;
+            this.captureHeight = captureHeight;
+            this.captureFps = captureFps;
+            this.width = width;
+            this.height = height;
+            this.fps = fps;
+        }
+    }
+
+    private CaptureFormatSelector() {
+    }
+
+    /**
+     * @return the selection, or {@code null} if no format is known or none
+     * satisfies the {@code min} and {@code exact} bounds.
+     */
+    @Nullable
+    public static Selection select(List<CaptureFormat> formats, Constraint width, Constraint height,
+                                   Constraint frameRate, int defaultWidth, int defaultHeight, int defaultFps) {
+        int targetWidth = width.target(defaultWidth);
+        int targetHeight = height.target(defaultHeight);
+        int targetFps = frameRate.target(defaultFps);
+        int requiredWidth = width.required();
+        int requiredHeight = height.required();
+        // Camera formats are landscape; the source rotates the output.
+        boolean portrait = targetWidth < targetHeight;
+        if (portrait) {
+            int swap = targetWidth;
+            targetWidth = targetHeight;
+            targetHeight = swap;
+            swap = requiredWidth;
+            requiredWidth = requiredHeight;
+            requiredHeight = swap;
+        }
+
+        CaptureFormat best = null;
+        boolean bestCovers = false;
+        long bestScore = 0;
+        for (CaptureFormat format : formats) {
+            int maxFps = maxFps(format);
+            if (format.width < requiredWidth || format.height < requiredHeight
+                    || maxFps < frameRate.required()) {
+                continue;
+            }
+            boolean covers = format.width >= targetWidth && format.height >= targetHeight
+                    && maxFps >= targetFps;
+            long pixels = (long) format.width * format.height;
+            if (covers) {
+                // The cheapest covering format.
+                if (!bestCovers || pixels < bestScore) {
+                    best = format;
+                    bestCovers = true;
+                    bestScore = pixels;
+                }
+            } else if (!bestCovers) {
+                // The format that comes closest.
+                long covered = (long) Math.min(format.width, targetWidth)
+                        * Math.min(format.height, targetHeight) * Math.min(maxFps, targetFps);
+                if (best == null || covered > bestScore) {
+                    best = format;
+                    bestScore = covered;
+                }
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+
+        int captureFps = Math.min(targetFps, maxFps(best));
+        // Never scale up: shrink the target to fit the format if needed.
+        double scale = Math.min(1.0, Math.min(
+                (double) best.width / targetWidth, (double) best.height / targetHeight));
+        int outputWidth = (int) Math.round(targetWidth * scale);
+        int outputHeight = (int) Math.round(targetHeight * scale);
+        if (portrait) {
+            int swap = outputWidth;
+            outputWidth = outputHeight;
+            outputHeight = swap;
+        }
+        return new Selection(best.width, best.height, captureFps, outputWidth, outputHeight, captureFps);
+    }
+
+    private static int maxFps(CaptureFormat format) {
+        // Frame rates are in units of 1/1000 fps.
+        return (format.framerate.max + 999) / 1000;
+    }
+}
@@ -0,0 +1,177 @@
+package com.cloudwebrtc.webrtc.video;
+
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.FlutterWebRTCPlugin;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The hardware video codecs of the device, read from {@link MediaCodecList}
+ * once and cached, since querying it takes tens of milliseconds.
+ */
+public final class MediaCodecCapabilities {
+    private static final String TAG = FlutterWebRTCPlugin.TAG;
+
+    public static final class CodecCapability {
+        public final String name;
+        /**
+         * The maximum number of concurrent instances, or 0 if unknown.
+         */
+        public final int maxInstances;
+        public final int maxWidth;
+        public final int maxHeight;
+
+        CodecCapability(String name, int maxInstances, int maxWidth, int maxHeight) {
+            this.name = name;
+            this.maxInstances = maxInstances;
+            this.maxWidth = maxWidth;
+            this.maxHeight = maxHeight;
+        }
+
+        /**
+         * Whether a {@code width}x{@code height} stream fits, in either
+         * orientation.
+         */
+        public boolean supportsSize(int width, int height) {
+            return Math.max(width, height) <= Math.max(maxWidth, maxHeight)
+                    && Math.min(width, height) <= Math.min(maxWidth, maxHeight);
+        }
+    }
+
+    private static MediaCodecCapabilities instance;
+
+    // The first hardware codec of each MIME type, keyed by MIME type.
+    private final Map<String, CodecCapability> hardwareEncoders = new HashMap<>();
+    private final Map<String, CodecCapability> hardwareDecoders = new HashMap<>();
+    // Every hardware encoder, keyed by MIME type and MediaCodec name.
+    private final Map<String, CodecCapability> hardwareEncodersByName = new HashMap<>();
+
+    public static synchronized MediaCodecCapabilities get() {
+        if (instance == null) {
+            instance = new MediaCodecCapabilities();
+        }
+        return instance;
+    }
+
+    private MediaCodecCapabilities() {
+        MediaCodecInfo[] codecInfos;
+        try {
+            codecInfos = new MediaCodecList(MediaCodecList.REGULAR_CODECS).getCodecInfos();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "MediaCodecList failed", e);
+            return;
+        }
+        for (MediaCodecInfo info : codecInfos) {
+            if (!isHardwareAccelerated(info)) {
+                continue;
+            }
+            for (String type : info.getSupportedTypes()) {
+                String mimeType = type.toLowerCase(Locale.ROOT);
+                if (!mimeType.startsWith("video/")) {
+                    continue;
+                }
+                CodecCapability capability = readCapability(info, type);
+                if (capability == null) {
+                    continue;
+                }
+                if (info.isEncoder()) {
+                    hardwareEncodersByName.put(mimeType + "/" + info.getName(), capability);
+                }
+                Map<String, CodecCapability> codecs = info.isEncoder() ? hardwareEncoders : hardwareDecoders;
+                // The hardware codec factories use the first supported codec
+                // of a type, in MediaCodecList order.
+                if (!codecs.containsKey(mimeType)) {
+                    codecs.put(mimeType, capability);
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private static CodecCapability readCapability(MediaCodecInfo info, String type) {
+        try {
+            MediaCodecInfo.CodecCapabilities capabilities = info.getCapabilitiesForType(type);
+            MediaCodecInfo.VideoCapabilities videoCapabilities = capabilities.getVideoCapabilities();
+            if (videoCapabilities == null) {
+                return null;
+            }
+            int maxInstances = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+                    ? capabilities.getMaxSupportedInstances() : 0;
+            return new CodecCapability(info.getName(), maxInstances,
+                    videoCapabilities.getSupportedWidths().getUpper(),
+                    videoCapabilities.getSupportedHeights().getUpper());
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to read capabilities of " + info.getName() + " for " + type, e);
+            return null;
+        }
+    }
+
+    private static boolean isHardwareAccelerated(MediaCodecInfo info) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return info.isHardwareAccelerated();
+        }
+        String name = info.getName().toLowerCase(Locale.ROOT);
+        return !name.startsWith("omx.google.") && !name.startsWith("c2.android.")
+                && !name.startsWith("c2.google.");
+    }
+
+    /**
+     * Maps a WebRTC codec name such as {@code "H264"} to its MIME type.
+     */
+    @Nullable
+    public static String mimeTypeForCodec(String codecName) {
+        switch (codecName.toUpperCase(Locale.ROOT)) {
+            case "VP8":
+                return "video/x-vnd.on2.vp8";
+            case "VP9":
+                return "video/x-vnd.on2.vp9";
+            case "H264":
+                return "video/avc";
+            case "H265":
+                return "video/hevc";
+            case "AV1":
+                return "video/av01";
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    public CodecCapability getHardwareEncoder(String codecName) {
+        return getHardwareEncoder(codecName, null);
+    }
+
+    /**
+     * @param mediaCodecName the name of the {@code MediaCodec} the encoder
+     *                       was created with, if known; otherwise the first
+     *                       hardware encoder of the codec is assumed.
+     */
+    @Nullable
+    public CodecCapability getHardwareEncoder(String codecName, @Nullable String mediaCodecName) {
+        String mimeType = mimeTypeForCodec(codecName);
+        if (mimeType == null) {
+            return null;
+        }
+        if (mediaCodecName != null) {
+            CodecCapability capability = hardwareEncodersByName.get(mimeType + "/" + mediaCodecName);
+            if (capability != null) {
+                return capability;
+            }
+        }
+        return hardwareEncoders.get(mimeType);
+    }
+
+    @Nullable
+    public CodecCapability getHardwareDecoder(String codecName) {
+        String mimeType = mimeTypeForCodec(codecName);
+        return mimeType == null ? null : hardwareDecoders.get(mimeType);
+    }
+}
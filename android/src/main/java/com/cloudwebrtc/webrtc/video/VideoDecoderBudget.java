@@ -0,0 +1,129 @@
+package com.cloudwebrtc.webrtc.video;
+
+import android.util.Log;
+
+import com.cloudwebrtc.webrtc.FlutterWebRTCPlugin;
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hands out hardware decoder instances to the decoders created by
+ * {@link BudgetedVideoDecoderFactory}. Once the device's concurrent instance
+ * limit, or the configured {@code maxHardwareDecoders}, is reached, further
+ * streams are decoded in software instead of failing to decode at all.
+ * Streams initialized at no more than {@code softwareMaxPixels} (thumbnails)
+ * are always decoded in software, which leaves the hardware instances for the
+ * large ones. Note that the size a decoder is initialized with is WebRTC's
+ * initial resolution hint for the stream, not necessarily its final size.
+ *
+ * Configured with the {@code decoderBudget} initialize option:
+ * <pre>
+ *   {"maxHardwareDecoders": 8, "softwareMaxPixels": 230400}
+ * </pre>
+ */
+public final class VideoDecoderBudget {
+    private static final String TAG = FlutterWebRTCPlugin.TAG;
+
+    public static final VideoDecoderBudget instance = new VideoDecoderBudget();
+
+    // Guarded by this.
+    private int maxHardwareDecoders = 0;
+    private long softwareMaxPixels = 0;
+    private final Map<String, Integer> activeDecoders = new HashMap<>();
+    private final Map<String, Integer> refusedDecoders = new HashMap<>();
+    private int totalActiveDecoders = 0;
+
+    private VideoDecoderBudget() {
+    }
+
+    public synchronized void configure(ConstraintsMap budget) {
+        maxHardwareDecoders = budget.hasKey("maxHardwareDecoders") ? budget.getInt("maxHardwareDecoders") : 0;
+        Object maxPixels = budget.toMap().get("softwareMaxPixels");
+        softwareMaxPixels = maxPixels instanceof Number ? ((Number) maxPixels).longValue() : 0;
+    }
+
+    /**
+     * Called before a hardware decoder is initialized. {@code width} and
+     * {@code height} are 0 if the stream size is not known yet. If this
+     * returns {@code true}, the decoder must later be handed back with
+     * {@link #releaseHardwareDecoder}.
+     */
+    public synchronized boolean acquireHardwareDecoder(String codecName, int width, int height) {
+        String codec = codecName.toUpperCase(Locale.ROOT);
+        String reason = refusalReason(codec, width, height);
+        if (reason != null) {
+            Log.d(TAG, "VideoDecoderBudget: software " + codec + " decoder for "
+                    + width + "x" + height + ", " + reason);
+            increment(refusedDecoders, codec);
+            return false;
+        }
+        increment(activeDecoders, codec);
+        totalActiveDecoders++;
+        return true;
+    }
+
+    public synchronized void releaseHardwareDecoder(String codecName) {
+        String codec = codecName.toUpperCase(Locale.ROOT);
+        Integer count = activeDecoders.get(codec);
+        if (count != null && count > 0) {
+            activeDecoders.put(codec, count - 1);
+            totalActiveDecoders--;
+        }
+    }
+
+    private String refusalReason(String codec, int width, int height) {
+        long pixels = (long) width * height;
+        if (pixels > 0 && pixels <= softwareMaxPixels) {
+            return "at most softwareMaxPixels";
+        }
+        MediaCodecCapabilities.CodecCapability capability =
+                MediaCodecCapabilities.get().getHardwareDecoder(codec);
+        if (capability != null && pixels > 0 && !capability.supportsSize(width, height)) {
+            return "unsupported size";
+        }
+        int limit = limit(capability);
+        Integer active = activeDecoders.get(codec);
+        if (limit > 0 && active != null && active >= limit) {
+            return "instance limit " + limit + " reached";
+        }
+        if (maxHardwareDecoders > 0 && totalActiveDecoders >= maxHardwareDecoders) {
+            return "maxHardwareDecoders reached";
+        }
+        return null;
+    }
+
+    private static int limit(MediaCodecCapabilities.CodecCapability capability) {
+        return capability == null ? 0 : capability.maxInstances;
+    }
+
+    private static void increment(Map<String, Integer> counts, String codec) {
+        Integer count = counts.get(codec);
+        counts.put(codec, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Active and refused hardware decoders and the instance limit, by codec.
+     */
+    public synchronized Map<String, Object> getStats() {
+        ConstraintsMap stats = new ConstraintsMap();
+        Set<String> codecs = new HashSet<>(activeDecoders.keySet());
+        codecs.addAll(refusedDecoders.keySet());
+        for (String codec : codecs) {
+            ConstraintsMap params = new ConstraintsMap(3);
+            Integer active = activeDecoders.get(codec);
+            Integer refused = refusedDecoders.get(codec);
+            params.putInt("activeHardwareDecoders", active == null ? 0 : active);
+            params.putInt("softwareFallbacks", refused == null ? 0 : refused);
+            params.putInt("instanceLimit", limit(MediaCodecCapabilities.get().getHardwareDecoder(codec)));
+            stats.putMap(codec, params.toMap());
+        }
+        stats.putInt("totalActiveHardwareDecoders", totalActiveDecoders);
+        stats.putInt("maxHardwareDecoders", maxHardwareDecoders);
+        return stats.toMap();
+    }
+}
@@ -0,0 +1,200 @@
+package com.cloudwebrtc.webrtc.video;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.FlutterWebRTCPlugin;
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+
+import org.webrtc.SoftwareVideoEncoderFactory;
+import org.webrtc.VideoCodecInfo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides whether a stream gets a hardware encoder or falls back to software,
+ * before the hardware encoder is initialized rather than after it fails to.
+ *
+ * Hardware is refused when a rule denies it for the codec and resolution,
+ * when the resolution exceeds what {@link MediaCodecCapabilities} reports,
+ * or when the device's concurrent instance limit (or the configured
+ * {@code maxHardwareEncoders}) is reached. Hardware is never refused for a
+ * codec without a software encoder.
+ *
+ * Configured with the {@code encoderPolicy} initialize option:
+ * <pre>
+ *   {
+ *     "maxHardwareEncoders": 4,
+ *     "rules": [{"codec": "VP8", "maxPixels": 76800, "hardware": false}]
+ *   }
+ * </pre>
+ * Rules are matched in order; {@code codec}, {@code minPixels} and
+ * {@code maxPixels} are optional.
+ */
+public final class VideoEncoderPolicy {
+    private static final String TAG = FlutterWebRTCPlugin.TAG;
+
+    public static final VideoEncoderPolicy instance = new VideoEncoderPolicy();
+
+    private static final class Rule {
+        final String codec;
+        final long minPixels;
+        final long maxPixels;
+        final boolean hardware;
+
+        Rule(String codec, long minPixels, long maxPixels, boolean hardware) {
+            this.codec = codec;
+            this.minPixels = minPixels;
+            this.maxPixels = maxPixels;
+            this.hardware = hardware;
+        }
+
+        boolean matches(String codecName, long pixels) {
+            return (codec == null || codec.equalsIgnoreCase(codecName))
+                    && pixels >= minPixels && pixels <= maxPixels;
+        }
+    }
+
+    // Guarded by this.
+    private int maxHardwareEncoders = 0;
+    private final List<Rule> rules = new ArrayList<>();
+    private Set<String> softwareCodecs;
+    private final Map<String, Integer> activeEncoders = new HashMap<>();
+    private final Map<String, Integer> refusedEncoders = new HashMap<>();
+    private int totalActiveEncoders = 0;
+
+    private VideoEncoderPolicy() {
+    }
+
+    public synchronized void configure(ConstraintsMap policy) {
+        maxHardwareEncoders = policy.hasKey("maxHardwareEncoders") ? policy.getInt("maxHardwareEncoders") : 0;
+        rules.clear();
+        ArrayList<Object> ruleList = policy.hasKey("rules") ? policy.getListArray("rules") : null;
+        if (ruleList == null) {
+            return;
+        }
+        for (Object item : ruleList) {
+            if (!(item instanceof Map)) {
+                continue;
+            }
+            @SuppressWarnings("unchecked")
+            ConstraintsMap rule = new ConstraintsMap((Map<String, Object>) item);
+            rules.add(new Rule(
+                    rule.hasKey("codec") ? rule.getString("codec") : null,
+                    longValue(rule, "minPixels", 0),
+                    longValue(rule, "maxPixels", Long.MAX_VALUE),
+                    !rule.hasKey("hardware") || rule.getBoolean("hardware")));
+        }
+    }
+
+    private static long longValue(ConstraintsMap map, String key, long defaultValue) {
+        Object value = map.toMap().get(key);
+        return value instanceof Number ? ((Number) value).longValue() : defaultValue;
+    }
+
+    /**
+     * Called before a hardware encoder is initialized for a
+     * {@code width}x{@code height} stream. If this returns {@code true}, the
+     * encoder must later be handed back with {@link #releaseHardwareEncoder}.
+     *
+     * @param mediaCodecName the encoder's implementation name, which for
+     *                       hardware encoders is the {@code MediaCodec} name.
+     */
+    public synchronized boolean acquireHardwareEncoder(String codecName, @Nullable String mediaCodecName,
+                                                       int width, int height) {
+        String codec = codecName.toUpperCase(Locale.ROOT);
+        String reason = hasSoftwareEncoder(codec)
+                ? refusalReason(codec, mediaCodecName, width, height) : null;
+        if (reason != null) {
+            Log.d(TAG, "VideoEncoderPolicy: software " + codec + " encoder for "
+                    + width + "x" + height + ", " + reason);
+            increment(refusedEncoders, codec);
+            return false;
+        }
+        increment(activeEncoders, codec);
+        totalActiveEncoders++;
+        return true;
+    }
+
+    public synchronized void releaseHardwareEncoder(String codecName) {
+        String codec = codecName.toUpperCase(Locale.ROOT);
+        Integer count = activeEncoders.get(codec);
+        if (count != null && count > 0) {
+            activeEncoders.put(codec, count - 1);
+            totalActiveEncoders--;
+        }
+    }
+
+    private String refusalReason(String codec, @Nullable String mediaCodecName, int width, int height) {
+        long pixels = (long) width * height;
+        for (Rule rule : rules) {
+            if (rule.matches(codec, pixels)) {
+                if (!rule.hardware) {
+                    return "denied by rule";
+                }
+                break;
+            }
+        }
+        MediaCodecCapabilities.CodecCapability capability =
+                MediaCodecCapabilities.get().getHardwareEncoder(codec, mediaCodecName);
+        if (capability != null && !capability.supportsSize(width, height)) {
+            return "unsupported size";
+        }
+        int limit = limit(capability);
+        Integer active = activeEncoders.get(codec);
+        if (limit > 0 && active != null && active >= limit) {
+            return "instance limit " + limit + " reached";
+        }
+        if (maxHardwareEncoders > 0 && totalActiveEncoders >= maxHardwareEncoders) {
+            return "maxHardwareEncoders reached";
+        }
+        return null;
+    }
+
+    private static int limit(MediaCodecCapabilities.CodecCapability capability) {
+        return capability == null ? 0 : capability.maxInstances;
+    }
+
+    private boolean hasSoftwareEncoder(String codec) {
+        if (softwareCodecs == null) {
+            softwareCodecs = new HashSet<>();
+            for (VideoCodecInfo info : new SoftwareVideoEncoderFactory().getSupportedCodecs()) {
+                softwareCodecs.add(info.name.toUpperCase(Locale.ROOT));
+            }
+        }
+        return softwareCodecs.contains(codec);
+    }
+
+    private static void increment(Map<String, Integer> counts, String codec) {
+        Integer count = counts.get(codec);
+        counts.put(codec, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Active and refused hardware encoders and the instance limit, by codec.
+     */
+    public synchronized Map<String, Object> getStats() {
+        ConstraintsMap stats = new ConstraintsMap();
+        Set<String> codecs = new HashSet<>(activeEncoders.keySet());
+        codecs.addAll(refusedEncoders.keySet());
+        for (String codec : codecs) {
+            ConstraintsMap params = new ConstraintsMap(3);
+            Integer active = activeEncoders.get(codec);
+            Integer refused = refusedEncoders.get(codec);
+            params.putInt("activeHardwareEncoders", active == null ? 0 : active);
+            params.putInt("softwareFallbacks", refused == null ? 0 : refused);
+            params.putInt("instanceLimit", limit(MediaCodecCapabilities.get().getHardwareEncoder(codec)));
+            stats.putMap(codec, params.toMap());
+        }
+        stats.putInt("totalActiveHardwareEncoders", totalActiveEncoders);
+        stats.putInt("maxHardwareEncoders", maxHardwareEncoders);
+        return stats.toMap();
+    }
+}
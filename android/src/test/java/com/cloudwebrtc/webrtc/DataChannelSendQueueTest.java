@@ -0,0 +1,107 @@
+package com.cloudwebrtc.webrtc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.webrtc.DataChannel;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class DataChannelSendQueueTest {
+
+    private static final long MAX_BUFFERED_AMOUNT = 16;
+
+    /**
+     * Buffers every sent message until {@link #flush()} is called, like the
+     * SCTP transport does.
+     */
+    private static class FakeDataChannel extends DataChannel {
+        final List<Buffer> sent = new ArrayList<>();
+        long bufferedAmount;
+
+        FakeDataChannel() {
+            super(0);
+        }
+
+        @Override
+        public long bufferedAmount() {
+            return bufferedAmount;
+        }
+
+        @Override
+        public boolean send(Buffer buffer) {
+            sent.add(buffer);
+            bufferedAmount += buffer.data.remaining();
+            return true;
+        }
+
+        void flush() {
+            bufferedAmount = 0;
+        }
+    }
+
+    private static DataChannel.Buffer buffer(int size) {
+        return new DataChannel.Buffer(ByteBuffer.allocate(size), true);
+    }
+
+    @Test
+    public void sendsOversizedFirstMessageOnIdleChannel() {
+        FakeDataChannel channel = new FakeDataChannel();
+        DataChannelSendQueue queue = new DataChannelSendQueue(channel, MAX_BUFFERED_AMOUNT);
+        DataChannel.Buffer oversized = buffer((int) MAX_BUFFERED_AMOUNT * 4);
+
+        assertTrue(queue.send(oversized));
+
+        assertEquals(1, channel.sent.size());
+        assertSame(oversized, channel.sent.get(0));
+        assertEquals(0, queue.getQueuedAmount());
+    }
+
+    @Test
+    public void queuesOversizedMessageBehindBufferedData() {
+        FakeDataChannel channel = new FakeDataChannel();
+        DataChannelSendQueue queue = new DataChannelSendQueue(channel, MAX_BUFFERED_AMOUNT);
+        DataChannel.Buffer first = buffer(8);
+        DataChannel.Buffer oversized = buffer((int) MAX_BUFFERED_AMOUNT * 4);
+
+        queue.send(first);
+        queue.send(oversized);
+
+        assertEquals(1, channel.sent.size());
+        assertEquals(MAX_BUFFERED_AMOUNT * 4, queue.getQueuedAmount());
+
+        channel.flush();
+        queue.drain();
+
+        assertEquals(2, channel.sent.size());
+        assertSame(oversized, channel.sent.get(1));
+        assertEquals(0, queue.getQueuedAmount());
+    }
+
+    @Test
+    public void keepsOrderWhileMessagesAreQueued() {
+        FakeDataChannel channel = new FakeDataChannel();
+        DataChannelSendQueue queue = new DataChannelSendQueue(channel, MAX_BUFFERED_AMOUNT);
+        DataChannel.Buffer first = buffer(12);
+        DataChannel.Buffer second = buffer(12);
+        DataChannel.Buffer third = buffer(2);
+
+        queue.send(first);
+        queue.send(second);
+        // Fits, but must not overtake the queued second buffer.
+        queue.send(third);
+
+        assertEquals(1, channel.sent.size());
+
+        channel.flush();
+        queue.drain();
+
+        assertEquals(3, channel.sent.size());
+        assertSame(second, channel.sent.get(1));
+        assertSame(third, channel.sent.get(2));
+    }
+}
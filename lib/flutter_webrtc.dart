@@ -16,4 +16,5 @@ export 'src/native/rtc_video_view_impl.dart'
 export 'src/native/utils.dart' if (dart.library.html) 'src/web/utils.dart';
 export 'src/native/adapter_type.dart';
 export 'src/native/android/audio_configuration.dart';
+export 'src/native/android/video_compositor.dart';
 export 'src/native/ios/audio_configuration.dart';
@@ -67,6 +67,38 @@ class Helper {
     return Future.value(true);
   }
 
+  /// Android only: switches camera like [switchCamera], and completes once
+  /// the first frame of the new camera has arrived, with `frontFacing`,
+  /// `hotStandby`, `switchTimeMs` and `firstFrameTimeMs`. Fails if no frame
+  /// arrives within five seconds.
+  static Future<Map<String, dynamic>> switchCameraWithStats(
+      MediaStreamTrack track) async {
+    if (!WebRTC.platformIsAndroid) {
+      throw UnimplementedError(
+          'switchCameraWithStats is only implemented on Android');
+    }
+    final response = await WebRTC.invokeMethod(
+      'mediaStreamTrackSwitchCamera',
+      <String, dynamic>{'trackId': track.id, 'stats': true},
+    );
+    return Map<String, dynamic>.from(response);
+  }
+
+  /// Android only: with hot standby, the camera the next [switchCamera] of
+  /// [track] switches to is chosen ahead of time, and the capture format
+  /// each track sharing the camera will use on it is selected, so the switch
+  /// only has to open the camera.
+  static Future<void> setCameraHotStandby(
+      MediaStreamTrack track, bool enabled) async {
+    if (!WebRTC.platformIsAndroid) {
+      return;
+    }
+    await WebRTC.invokeMethod(
+      'mediaStreamTrackSetCameraHotStandby',
+      <String, dynamic>{'trackId': track.id, 'enabled': enabled},
+    );
+  }
+
   /// Used to select a specific audio output device.
   ///
   /// Note: This method is only used for Flutter native,
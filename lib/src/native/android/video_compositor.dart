@@ -0,0 +1,72 @@
+import 'package:webrtc_interface/webrtc_interface.dart';
+
+import '../utils.dart';
+
+/// The position of a video track in an [AndroidVideoCompositor] texture, in
+/// fractions of the texture size with the origin at the top left.
+class VideoCompositorTile {
+  VideoCompositorTile({
+    required this.track,
+    required this.x,
+    required this.y,
+    required this.width,
+    required this.height,
+    this.mirror = false,
+  });
+  final MediaStreamTrack track;
+  final double x;
+  final double y;
+  final double width;
+  final double height;
+  final bool mirror;
+
+  Map<String, dynamic> toMap() => <String, dynamic>{
+        'trackId': track.id,
+        'x': x,
+        'y': y,
+        'width': width,
+        'height': height,
+        'mirror': mirror,
+      };
+}
+
+/// Draws several video tracks into one texture, e.g. for a gallery view, so
+/// a grid costs a single texture and composition pass instead of one
+/// [RTCVideoRenderer] per track. Show it with a `Texture(textureId: ...)`
+/// widget. Android only.
+class AndroidVideoCompositor {
+  int? _textureId;
+
+  int? get textureId => _textureId;
+
+  Future<void> initialize() async {
+    if (_textureId != null) {
+      return;
+    }
+    final response = await WebRTC.invokeMethod('createVideoCompositor', {});
+    _textureId = response['textureId'];
+  }
+
+  /// Sets the output size in pixels and the tiles to draw, in drawing order.
+  /// At most [maxFps] composition passes are made per second.
+  Future<void> setLayout(int width, int height, List<VideoCompositorTile> tiles,
+      {int? maxFps}) async {
+    if (_textureId == null) throw 'Call initialize before setting the layout';
+    await WebRTC.invokeMethod('videoCompositorSetLayout', <String, dynamic>{
+      'textureId': _textureId,
+      'width': width,
+      'height': height,
+      if (maxFps != null) 'maxFps': maxFps,
+      'tiles': tiles.map((tile) => tile.toMap()).toList(),
+    });
+  }
+
+  Future<void> dispose() async {
+    if (_textureId != null) {
+      await WebRTC.invokeMethod('videoCompositorDispose', <String, dynamic>{
+        'textureId': _textureId,
+      });
+      _textureId = null;
+    }
+  }
+}
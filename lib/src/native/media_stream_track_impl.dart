@@ -2,6 +2,8 @@ import 'dart:async';
 import 'dart:io';
 import 'dart:typed_data';
 
+import 'package:flutter/foundation.dart' show visibleForTesting;
+
 import 'package:path_provider/path_provider.dart';
 import 'package:webrtc_interface/webrtc_interface.dart';
 
@@ -18,11 +20,18 @@ class MediaStreamTrackNative extends MediaStreamTrack {
     return MediaStreamTrackNative(map['id'], map['label'], map['kind'],
         map['enabled'], peerConnectionId, map['settings'] ?? {});
   }
+  /// Lets tests run the Android code paths on the host.
+  @visibleForTesting
+  static bool? platformIsAndroidOverride;
+
+  static bool get _platformIsAndroid =>
+      platformIsAndroidOverride ?? WebRTC.platformIsAndroid;
+
   final String _trackId;
   final String _label;
   final String _kind;
   final String _peerConnectionId;
-  final Map<Object?, Object?> settings_;
+  Map<Object?, Object?> settings_;
 
   bool _enabled;
 
@@ -97,17 +106,48 @@ class MediaStreamTrackNative extends MediaStreamTrack {
         .then((value) => value.buffer);
   }
 
+  /// On Android, `width`, `height` and `frameRate` of a camera track are
+  /// changed in place, without restarting the track; constraints not given
+  /// keep their current values. Other video tracks, such as screen share,
+  /// keep their settings.
   @override
-  Future<void> applyConstraints([Map<String, dynamic>? constraints]) {
-    if (constraints == null) return Future.value();
+  Future<void> applyConstraints([Map<String, dynamic>? constraints]) async {
+    if (constraints == null) return;
 
     var current = getConstraints();
     if (constraints.containsKey('volume') &&
         current['volume'] != constraints['volume']) {
-      Helper.setVolume(constraints['volume'], this);
+      await Helper.setVolume(constraints['volume'], this);
+    }
+
+    if (kind == 'video' &&
+        _platformIsAndroid &&
+        settings_['kind'] == 'videoinput' &&
+        (constraints.containsKey('width') ||
+            constraints.containsKey('height') ||
+            constraints.containsKey('frameRate'))) {
+      final response = await WebRTC.invokeMethod(
+        'mediaStreamTrackApplyConstraints',
+        <String, dynamic>{'trackId': _trackId, 'constraints': constraints},
+      );
+      if (response != null) {
+        settings_ = response;
+      }
     }
+  }
 
-    return Future.value();
+  /// Creates an independent track on the same source: on Android a camera
+  /// track shares the camera's capturer with its own output format, and a
+  /// microphone track shares the audio source.
+  Future<MediaStreamTrack> clone() async {
+    if (!_platformIsAndroid) {
+      throw UnimplementedError('clone() is only implemented on Android');
+    }
+    final response = await WebRTC.invokeMethod(
+      'mediaStreamTrackClone',
+      <String, dynamic>{'trackId': _trackId},
+    );
+    return MediaStreamTrackNative.fromMap(response, _peerConnectionId);
   }
 
   @override
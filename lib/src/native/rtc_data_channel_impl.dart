@@ -29,9 +29,45 @@ class RTCDataChannelNative extends RTCDataChannel {
   final String _peerConnectionId;
   final String _label;
   int _bufferedAmount = 0;
+  int? _bufferedAmountLowThreshold;
+  bool _bufferedAmountChangeEvents = true;
+
+  @override
+  int? get bufferedAmountLowThreshold => _bufferedAmountLowThreshold;
+
+  /// On Android the threshold is evaluated natively and [onBufferedAmountLow]
+  /// fires once each time the buffered amount drops to or below it. Use
+  /// [setBufferedAmountLowThreshold] to be told if setting it fails.
   @override
-  // ignore: overridden_fields
-  int? bufferedAmountLowThreshold;
+  set bufferedAmountLowThreshold(int? threshold) {
+    if (WebRTC.platformIsAndroid) {
+      setBufferedAmountLowThreshold(threshold).catchError((Object e) {
+        print('RTCDataChannel: setting bufferedAmountLowThreshold failed: $e');
+      });
+    } else {
+      _bufferedAmountLowThreshold = threshold;
+    }
+  }
+
+  /// Android only. Sets [bufferedAmountLowThreshold], and with
+  /// [bufferedAmountChangeEvents] whether [onBufferedAmountChange] is called
+  /// for every change of the buffered amount. Senders pacing themselves on
+  /// [onBufferedAmountLow] can turn those events off to avoid one per
+  /// acknowledgement.
+  Future<void> setBufferedAmountLowThreshold(int? threshold,
+      {bool? bufferedAmountChangeEvents}) async {
+    _bufferedAmountLowThreshold = threshold;
+    if (bufferedAmountChangeEvents != null) {
+      _bufferedAmountChangeEvents = bufferedAmountChangeEvents;
+    }
+    await WebRTC.invokeMethod(
+        'dataChannelSetBufferedAmountLowThreshold', <String, dynamic>{
+      'peerConnectionId': _peerConnectionId,
+      'dataChannelId': _flutterId,
+      'threshold': threshold ?? 0,
+      'bufferedAmountChangeEvents': _bufferedAmountChangeEvents,
+    });
+  }
 
   /// Id for the datachannel in the Flutter <-> Native layer.
   final String _flutterId;
@@ -53,6 +89,15 @@ class RTCDataChannelNative extends RTCDataChannel {
   @override
   int? get bufferedAmount => _bufferedAmount;
 
+  /// Android only. Called with the progress of [sendFile] and [receiveFile],
+  /// at most every 100 ms. [direction] is either `send` or `receive`.
+  void Function(String direction, int bytes, int totalBytes)?
+      onFileTransferProgress;
+
+  /// Android only. Called when a [receiveFile] with a known size completes,
+  /// with the error message if writing the file failed.
+  void Function(int bytesReceived, String? error)? onFileReceived;
+
   final _stateChangeController =
       StreamController<RTCDataChannelState>.broadcast(sync: true);
   final _messageController =
@@ -88,13 +133,27 @@ class RTCDataChannelNative extends RTCDataChannel {
 
       case 'dataChannelBufferedAmountChange':
         _bufferedAmount = map['bufferedAmount'];
-        if (bufferedAmountLowThreshold != null) {
+        if (!WebRTC.platformIsAndroid && bufferedAmountLowThreshold != null) {
           if (_bufferedAmount < bufferedAmountLowThreshold!) {
             onBufferedAmountLow?.call(_bufferedAmount);
           }
         }
         onBufferedAmountChange?.call(_bufferedAmount, map['changedAmount']);
         break;
+
+      case 'dataChannelBufferedAmountLow':
+        _bufferedAmount = map['bufferedAmount'];
+        onBufferedAmountLow?.call(_bufferedAmount);
+        break;
+
+      case 'dataChannelFileTransferProgress':
+        onFileTransferProgress?.call(
+            map['direction'], map['bytes'], map['totalBytes']);
+        break;
+
+      case 'dataChannelFileReceiveComplete':
+        onFileReceived?.call(map['bytesReceived'], map['error']);
+        break;
     }
   }
 
@@ -119,6 +178,60 @@ class RTCDataChannelNative extends RTCDataChannel {
     });
   }
 
+  /// Android only. Paces [send] natively so that no more than
+  /// [maxBufferedAmount] bytes are buffered by the transport at a time;
+  /// messages beyond that are queued and sent as the buffer drains.
+  /// Passing 0 disables the queue.
+  Future<void> setSendQueue(int maxBufferedAmount) async {
+    await WebRTC.invokeMethod('dataChannelSetSendQueue', <String, dynamic>{
+      'peerConnectionId': _peerConnectionId,
+      'dataChannelId': _flutterId,
+      'maxBufferedAmount': maxBufferedAmount,
+    });
+  }
+
+  /// Android only. Streams the file at [path] natively as binary messages of
+  /// [chunkSize] bytes, keeping at most [maxBufferedAmount] bytes buffered.
+  /// Completes with the number of bytes sent once the whole file is handed
+  /// to the data channel. Fails with a `PlatformException` whose code is
+  /// `dataChannelSendFileCancelled` if [close] is called meanwhile.
+  Future<int> sendFile(String path,
+      {int chunkSize = 16 * 1024, int maxBufferedAmount = 1024 * 1024}) async {
+    final response =
+        await WebRTC.invokeMethod('dataChannelSendFile', <String, dynamic>{
+      'peerConnectionId': _peerConnectionId,
+      'dataChannelId': _flutterId,
+      'path': path,
+      'chunkSize': chunkSize,
+      'maxBufferedAmount': maxBufferedAmount,
+    });
+    return response['bytesSent'];
+  }
+
+  /// Android only. Writes incoming binary messages to the file at [path]
+  /// instead of delivering them to [onMessage]. If [size] is given the file
+  /// is closed and [onFileReceived] is called once that many bytes arrived,
+  /// otherwise call [stopReceiveFile].
+  Future<void> receiveFile(String path, {int? size}) async {
+    await WebRTC.invokeMethod('dataChannelReceiveFile', <String, dynamic>{
+      'peerConnectionId': _peerConnectionId,
+      'dataChannelId': _flutterId,
+      'path': path,
+      'size': size ?? 0,
+    });
+  }
+
+  /// Android only. Closes the file opened by [receiveFile] and returns the
+  /// number of bytes written to it.
+  Future<int> stopReceiveFile() async {
+    final response = await WebRTC.invokeMethod(
+        'dataChannelStopReceiveFile', <String, dynamic>{
+      'peerConnectionId': _peerConnectionId,
+      'dataChannelId': _flutterId,
+    });
+    return response['bytesReceived'];
+  }
+
   @override
   Future<void> close() async {
     await _stateChangeController.close();
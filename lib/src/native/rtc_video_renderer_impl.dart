@@ -45,6 +45,13 @@ class RTCVideoRenderer extends ValueNotifier<RTCVideoValue>
   @override
   Function? onFirstFrameRendered;
 
+  /// Called when the quality this renderer needs from the remote sender
+  /// changes, so the app can ask for a lower or higher simulcast layer
+  /// through its signaling. [quality] is `off`, `low`, `medium` or `high`.
+  /// Requires [setViewSize]. Android only.
+  Function(String trackId, String quality, int maxWidth, int maxHeight)?
+      onReceiveQualityHint;
+
   @override
   set srcObject(MediaStream? stream) {
     if (textureId == null) throw 'Call initialize before setting the stream';
@@ -77,6 +84,49 @@ class RTCVideoRenderer extends ValueNotifier<RTCVideoValue>
     });
   }
 
+  /// Frame counters (`framesReceived`, `framesRendered`, `framesDropped`) and
+  /// render time / capture-to-render latency percentiles in milliseconds
+  /// (`renderTimeP50Ms`, `latencyP99Ms`, ...). Android only.
+  Future<Map<String, dynamic>> getStats() async {
+    if (textureId == null) throw 'Call initialize before getting stats';
+    if (!WebRTC.platformIsAndroid) {
+      return <String, dynamic>{};
+    }
+    final response = await WebRTC.invokeMethod(
+        'videoRendererGetStats', <String, dynamic>{'textureId': textureId});
+    return Map<String, dynamic>.from(response);
+  }
+
+  /// Reports the on-screen size of the renderer, in physical pixels. The
+  /// texture is allocated and drawn at no more than this size, and it drives
+  /// [onReceiveQualityHint]. Android only.
+  Future<void> setViewSize(int width, int height) async {
+    if (textureId == null) throw 'Call initialize before setting the size';
+    if (!WebRTC.platformIsAndroid) {
+      return;
+    }
+    await WebRTC.invokeMethod('videoRendererSetViewSize', <String, dynamic>{
+      'textureId': textureId,
+      'width': width,
+      'height': height,
+    });
+  }
+
+  /// Throttles or pauses rendering, e.g. for tiles that are small or scrolled
+  /// out of view. [policy] is one of `visible`, `thumbnail` (rendered at [fps],
+  /// 15 by default) or `paused` (keeps the last frame). Android only.
+  Future<void> setRenderPolicy(String policy, {double? fps}) async {
+    if (textureId == null) throw 'Call initialize before setting the policy';
+    if (!WebRTC.platformIsAndroid) {
+      return;
+    }
+    await WebRTC.invokeMethod('videoRendererSetRenderPolicy', <String, dynamic>{
+      'textureId': textureId,
+      'policy': policy,
+      if (fps != null) 'fps': fps,
+    });
+  }
+
   @override
   Future<void> dispose() async {
     await _eventSubscription?.cancel();
@@ -109,6 +159,10 @@ class RTCVideoRenderer extends ValueNotifier<RTCVideoValue>
         value = value.copyWith(renderVideo: renderVideo);
         onFirstFrameRendered?.call();
         break;
+      case 'didTextureRequestReceiveQuality':
+        onReceiveQualityHint?.call(map['trackId'], map['quality'],
+            map['maxWidth'], map['maxHeight']);
+        break;
     }
   }
 
@@ -34,6 +34,10 @@ class WebRTC {
 
   static bool initialized = false;
 
+  /// Creates the native peer connection factory. On Android, if the app
+  /// enables `com.cloudwebrtc.webrtc.WARM_UP_ON_ATTACH` in its manifest
+  /// meta-data, the expensive setup already runs in the background when the
+  /// plugin is attached, and the returned future completes once it is ready.
   static Future<void> initialize({Map<String, dynamic>? options}) async {
     if (!initialized) {
       await _channel.invokeMethod<void>('initialize', <String, dynamic>{
@@ -2,6 +2,7 @@ import 'package:flutter/services.dart';
 
 import 'package:flutter_test/flutter_test.dart';
 
+import 'package:flutter_webrtc/src/native/media_stream_track_impl.dart';
 import 'package:flutter_webrtc/src/native/rtc_data_channel_impl.dart';
 import 'package:flutter_webrtc/src/native/rtc_peerconnection_impl.dart';
 
@@ -81,4 +82,88 @@ void main() {
       });
     }
   });
+
+  group('MediaStreamTrackNative on Android', () {
+    final calls = <MethodCall>[];
+    final cameraSettings = <String, dynamic>{
+      'deviceId': '1',
+      'kind': 'videoinput',
+      'width': 1280,
+      'height': 720,
+      'frameRate': 30,
+    };
+
+    setUp(() {
+      MediaStreamTrackNative.platformIsAndroidOverride = true;
+      calls.clear();
+      channel.setMockMethodCallHandler((MethodCall methodCall) async {
+        calls.add(methodCall);
+        switch (methodCall.method) {
+          case 'mediaStreamTrackApplyConstraints':
+            return <String, dynamic>{
+              ...cameraSettings,
+              'width': 640,
+              'height': 360,
+              'frameRate': 15,
+            };
+          case 'mediaStreamTrackClone':
+            return <String, dynamic>{
+              'id': 'clone',
+              'label': 'video',
+              'kind': 'video',
+              'enabled': true,
+              'settings': cameraSettings,
+            };
+        }
+        return null;
+      });
+    });
+
+    tearDown(() {
+      MediaStreamTrackNative.platformIsAndroidOverride = null;
+    });
+
+    test('applyConstraints changes a camera track in place', () async {
+      final track = MediaStreamTrackNative(
+          'camera', 'video', 'video', true, '', cameraSettings);
+
+      await track.applyConstraints(
+          <String, dynamic>{'width': 640, 'height': 360, 'frameRate': 15});
+
+      final call = calls.singleWhere(
+          (call) => call.method == 'mediaStreamTrackApplyConstraints');
+      expect(call.arguments['trackId'], 'camera');
+      expect(call.arguments['constraints'],
+          <String, dynamic>{'width': 640, 'height': 360, 'frameRate': 15});
+      expect(track.getSettings()['width'], 640);
+      expect(track.getSettings()['height'], 360);
+      expect(track.getSettings()['frameRate'], 15);
+    });
+
+    test('applyConstraints leaves a screen share track alone', () async {
+      final track = MediaStreamTrackNative('screen', 'video', 'video', true, '');
+
+      await track.applyConstraints(<String, dynamic>{'width': 640});
+
+      expect(
+          calls.where(
+              (call) => call.method == 'mediaStreamTrackApplyConstraints'),
+          isEmpty);
+      expect(track.getSettings(), isEmpty);
+    });
+
+    test('clone returns a new track with its own settings', () async {
+      final track = MediaStreamTrackNative(
+          'camera', 'video', 'video', true, '', cameraSettings);
+
+      final clone = await track.clone();
+
+      final call =
+          calls.singleWhere((call) => call.method == 'mediaStreamTrackClone');
+      expect(call.arguments['trackId'], 'camera');
+      expect(clone.id, 'clone');
+      expect(clone.kind, 'video');
+      expect(clone.getSettings(), cameraSettings);
+    });
+  });
 }